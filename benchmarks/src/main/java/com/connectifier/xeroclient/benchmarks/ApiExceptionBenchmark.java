@@ -0,0 +1,62 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.connectifier.xeroclient.XeroApiException;
+import com.connectifier.xeroclient.XeroRateLimitException;
+import com.google.common.base.Charsets;
+
+/**
+ * Measures turning error responses into exceptions: a validation error, which is parsed as an
+ * ApiException, an OAuth problem, which isn't XML, and a rate limit, which is read from the headers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ApiExceptionBenchmark {
+
+  private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+  private BenchmarkClient client;
+  private byte[] validationError;
+  private byte[] oauthProblem;
+  private Map<String, String> rateLimitHeaders;
+
+  @Setup
+  public void setUp() {
+    client = new BenchmarkClient();
+    validationError = Fixtures.read("fixtures/validation-error.xml").getBytes(Charsets.UTF_8);
+    oauthProblem = ("oauth_problem=token_rejected"
+        + "&oauth_problem_advice=Token%20does%20not%20match%20an%20expected%20REQUEST%20token")
+        .getBytes(Charsets.UTF_8);
+    rateLimitHeaders = Collections.singletonMap("X-Rate-Limit-Problem", "Minute");
+  }
+
+  @Benchmark
+  public XeroApiException validationError() {
+    return client.apiException(400, NO_HEADERS, validationError);
+  }
+
+  @Benchmark
+  public XeroApiException oauthProblem() {
+    return client.apiException(401, NO_HEADERS, oauthProblem);
+  }
+
+  @Benchmark
+  public XeroApiException rateLimited() {
+    return client.apiException(XeroRateLimitException.RESPONSE_CODE, rateLimitHeaders, new byte[0]);
+  }
+
+}
@@ -0,0 +1,71 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+
+import org.scribe.model.OAuthRequest;
+
+import com.connectifier.xeroclient.XeroApiException;
+import com.connectifier.xeroclient.XeroClient;
+import com.connectifier.xeroclient.http.XeroHttpResponse;
+import com.connectifier.xeroclient.jaxb.JaxbBinder;
+import com.connectifier.xeroclient.models.Response;
+
+/**
+ * Exposes the client's request and response handling so it can be measured without a
+ * network. Client-side rate limiting is off.
+ */
+public class BenchmarkClient extends XeroClient {
+
+  private final boolean codecs;
+
+  public BenchmarkClient() {
+    this(true);
+  }
+
+  /**
+   * @param codecs whether to bind with the generated StAX codecs or with JAXB alone
+   */
+  public BenchmarkClient(boolean codecs) {
+    super(new StringReader(Fixtures.pem()), "CONSUMERKEY", "CONSUMERSECRET", true);
+    this.codecs = codecs;
+    setRateLimiter(null);
+  }
+
+  @Override
+  protected JaxbBinder binder(Class<?> clazz) {
+    JaxbBinder binder = super.binder(clazz);
+    return codecs ? binder : binder.withoutCodecs();
+  }
+
+  public Response unmarshall(String endPoint, byte[] body) {
+    return unmarshallResponse(endPoint, response(200, Collections.<String, String>emptyMap(), body));
+  }
+
+  public Response unmarshallInvoiceSummaries(byte[] body) {
+    return unmarshallResponse("Invoices", response(200, Collections.<String, String>emptyMap(), body), INVOICE_SUMMARIES);
+  }
+
+  public String marshall(JAXBElement<?> object) {
+    return marshallRequest(object);
+  }
+
+  public XeroApiException apiException(int code, Map<String, String> headers, byte[] body) {
+    return newApiException(response(code, headers, body));
+  }
+
+  public void sign(OAuthRequest request) {
+    service.signRequest(token, request);
+  }
+
+  private static XeroHttpResponse response(int code, Map<String, String> headers, byte[] body) {
+    return new XeroHttpResponse(code, headers, new ByteArrayInputStream(body));
+  }
+
+}
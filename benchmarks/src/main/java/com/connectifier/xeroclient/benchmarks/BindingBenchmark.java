@@ -0,0 +1,77 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.connectifier.xeroclient.jaxb.JaxbBinder;
+import com.connectifier.xeroclient.models.ArrayOfInvoice;
+import com.connectifier.xeroclient.models.ObjectFactory;
+import com.connectifier.xeroclient.models.Response;
+
+/**
+ * Compares building a JAXBContext per call, as the client used to, with the shared binder.
+ * Run with -prof gc to see the allocation rate of each.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class BindingBenchmark {
+
+  private String responseBody;
+  private JAXBElement<ArrayOfInvoice> request;
+
+  @Setup
+  public void setUp() throws JAXBException {
+    responseBody = Fixtures.read("fixtures/create-invoice-response.xml");
+    ArrayOfInvoice invoices = new ArrayOfInvoice();
+    invoices.getInvoice().addAll(unmarshalCached().getInvoices());
+    request = new ObjectFactory().createInvoices(invoices);
+  }
+
+  @Benchmark
+  public Response unmarshalNewContext() throws JAXBException {
+    JAXBContext context = JAXBContext.newInstance(Response.class);
+    return context.createUnmarshaller().unmarshal(source(), Response.class).getValue();
+  }
+
+  @Benchmark
+  public Response unmarshalCached() throws JAXBException {
+    return JaxbBinder.of(Response.class).unmarshal(source(), Response.class);
+  }
+
+  @Benchmark
+  public String marshalNewContext() throws JAXBException {
+    JAXBContext context = JAXBContext.newInstance(ArrayOfInvoice.class);
+    StringWriter writer = new StringWriter();
+    context.createMarshaller().marshal(request, writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public String marshalCached() throws JAXBException {
+    StringWriter writer = new StringWriter();
+    JaxbBinder.of(ArrayOfInvoice.class).marshal(request, writer);
+    return writer.toString();
+  }
+
+  private StreamSource source() {
+    return new StreamSource(new StringReader(responseBody));
+  }
+
+}
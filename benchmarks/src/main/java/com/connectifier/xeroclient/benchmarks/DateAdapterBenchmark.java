@@ -0,0 +1,64 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.connectifier.xeroclient.jaxb.DateAdapter;
+
+/**
+ * Compares the date conversions used for every date field and request parameter with the
+ * JDK equivalents they replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DateAdapterBenchmark {
+
+  private final String dateTime = "2015-02-19T06:39:12.597";
+  private final Date date = new Date(1424327952597L);
+
+  @Benchmark
+  public Date parseDateTime() {
+    return DateAdapter.parseDateTime(dateTime);
+  }
+
+  @Benchmark
+  public String printDateTime() {
+    return DateAdapter.printDateTime(date);
+  }
+
+  @Benchmark
+  public String printDateTimeCalendar() {
+    Calendar cal = new GregorianCalendar();
+    cal.setTime(date);
+    return DatatypeConverter.printDate(cal);
+  }
+
+  @Benchmark
+  public String printUtcDateTime() {
+    return DateAdapter.printUtcDateTime(date);
+  }
+
+  @Benchmark
+  public String printUtcDateTimeSimpleDateFormat() {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return format.format(date);
+  }
+
+}
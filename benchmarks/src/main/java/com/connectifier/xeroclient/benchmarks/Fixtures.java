@@ -0,0 +1,92 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+
+/**
+ * Loads the checked-in response payloads so results can be reproduced offline.
+ *
+ * Only a few entities of each type are checked in. Larger payloads are built from them
+ * deterministically with {@link #replicate}.
+ */
+public class Fixtures {
+
+  public static String read(String resource) {
+    try {
+      return Resources.toString(Resources.getResource(resource), Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not read fixture " + resource, e);
+    }
+  }
+
+  /**
+   * Returns the fixture for the given endpoint, e.g. {@code fixtures/invoices.xml} for Invoices,
+   * with its entities repeated in order until there are {@code count} of them.
+   */
+  public static String response(String endPoint, int count) {
+    return replicate(read("fixtures/" + endPoint.toLowerCase() + ".xml"), endPoint, count);
+  }
+
+  /**
+   * Repeats the entities in the given collection element of a response until there are
+   * {@code count} of them. The element name of each entity is the collection name without
+   * its trailing "s".
+   */
+  public static String replicate(String xml, String collection, int count) {
+    String element = collection.substring(0, collection.length() - 1);
+    String open = "<" + collection + ">";
+    String close = "</" + collection + ">";
+    int start = xml.indexOf(open);
+    int end = xml.indexOf(close);
+    if (start < 0 || end < 0) {
+      throw new IllegalArgumentException("No " + collection + " in fixture");
+    }
+    List<String> seeds = new ArrayList<>();
+    Matcher matcher = Pattern.compile("(?s)\\s*<" + element + ">.*?</" + element + ">")
+        .matcher(xml.substring(start + open.length(), end));
+    while (matcher.find()) {
+      seeds.add(matcher.group());
+    }
+    StringBuilder result = new StringBuilder(xml.substring(0, start + open.length()));
+    for (int i = 0; i < count; i++) {
+      result.append(seeds.get(i % seeds.size()));
+    }
+    // keep the whitespace before the closing tag
+    int tail = end;
+    while (Character.isWhitespace(xml.charAt(tail - 1))) {
+      tail--;
+    }
+    return result.append(xml.substring(tail)).toString();
+  }
+
+  /**
+   * Generates a new RSA key in PEM form, standing in for the private app's key.
+   */
+  public static String pem() {
+    try {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+      generator.initialize(1024);
+      StringWriter writer = new StringWriter();
+      try (JcaPEMWriter pemWriter = new JcaPEMWriter(writer)) {
+        pemWriter.writeObject(generator.generateKeyPair());
+      }
+      return writer.toString();
+    } catch (GeneralSecurityException | IOException e) {
+      throw new IllegalStateException("Could not generate key", e);
+    }
+  }
+
+}
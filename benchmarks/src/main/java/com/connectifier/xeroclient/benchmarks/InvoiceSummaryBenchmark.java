@@ -0,0 +1,50 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.connectifier.xeroclient.models.Response;
+import com.google.common.base.Charsets;
+
+/**
+ * Compares parsing a page of invoices in full with parsing only their headers, skipping
+ * line items, payments and credit notes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class InvoiceSummaryBenchmark {
+
+  @Param({"100", "1000"})
+  public int entities;
+
+  private BenchmarkClient client;
+  private byte[] body;
+
+  @Setup
+  public void setUp() {
+    client = new BenchmarkClient();
+    body = Fixtures.response("Invoices", entities).getBytes(Charsets.UTF_8);
+  }
+
+  @Benchmark
+  public Response invoices() {
+    return client.unmarshall("Invoices", body);
+  }
+
+  @Benchmark
+  public Response invoiceSummaries() {
+    return client.unmarshallInvoiceSummaries(body);
+  }
+
+}
@@ -0,0 +1,78 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.connectifier.xeroclient.ledger.LedgerBuilder;
+import com.connectifier.xeroclient.ledger.LedgerSnapshot;
+import com.connectifier.xeroclient.models.Journal;
+import com.google.common.base.Charsets;
+
+/**
+ * Measures trial balances over a ledger snapshot of the journal fixture repeated up to the
+ * given number of journals, on the calling thread and on a ForkJoinPool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class LedgerBenchmark {
+
+  @Param({"100000", "1000000"})
+  public int journals;
+
+  private LedgerSnapshot ledger;
+  private ForkJoinPool pool;
+  private int fromMonth;
+
+  @Setup
+  public void setUp() {
+    byte[] body = Fixtures.response("Journals", 1000).getBytes(Charsets.UTF_8);
+    List<Journal> page = new BenchmarkClient().unmarshall("Journals", body).getJournals();
+    LedgerBuilder builder = new LedgerBuilder();
+    for (int i = 0; i < journals; i++) {
+      builder.add(page.get(i % page.size()));
+    }
+    ledger = builder.build();
+    fromMonth = ledger.getEpochMonth(0) - 12;
+    pool = new ForkJoinPool();
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public long[] trialBalance() {
+    return ledger.trialBalance(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  @Benchmark
+  public long[] trialBalanceParallel() {
+    return ledger.trialBalance(Integer.MIN_VALUE, Integer.MAX_VALUE, pool);
+  }
+
+  @Benchmark
+  public long[][] trialBalanceByMonth() {
+    return ledger.trialBalanceByMonth(fromMonth, fromMonth + 24);
+  }
+
+  @Benchmark
+  public long[][] trialBalanceByMonthParallel() {
+    return ledger.trialBalanceByMonth(fromMonth, fromMonth + 24, pool);
+  }
+
+}
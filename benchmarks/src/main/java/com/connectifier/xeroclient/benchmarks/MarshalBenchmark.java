@@ -0,0 +1,55 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBElement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.connectifier.xeroclient.models.ArrayOfInvoice;
+import com.connectifier.xeroclient.models.ObjectFactory;
+import com.google.common.base.Charsets;
+
+/**
+ * Measures building the body of a batch invoice creation, from a single invoice up to the
+ * batch size Xero recommends and beyond.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class MarshalBenchmark {
+
+  @Param({"1", "50", "500"})
+  public int batchSize;
+
+  /** Whether to bind with the generated StAX codecs or with JAXB alone. */
+  @Param({"true", "false"})
+  public boolean codecs;
+
+  private BenchmarkClient client;
+  private JAXBElement<ArrayOfInvoice> request;
+
+  @Setup
+  public void setUp() {
+    client = new BenchmarkClient(codecs);
+    byte[] body = Fixtures.response("Invoices", batchSize).getBytes(Charsets.UTF_8);
+    ArrayOfInvoice invoices = new ArrayOfInvoice();
+    invoices.getInvoice().addAll(client.unmarshall("Invoices", body).getInvoices());
+    request = new ObjectFactory().createInvoices(invoices);
+  }
+
+  @Benchmark
+  public String marshallRequest() {
+    return client.marshall(request);
+  }
+
+}
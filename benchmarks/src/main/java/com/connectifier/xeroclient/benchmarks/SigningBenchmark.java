@@ -0,0 +1,80 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.io.StringReader;
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Verb;
+import org.scribe.services.RSASha1SignatureService;
+
+import com.connectifier.xeroclient.oauth.PrivateKeyRegistry;
+import com.connectifier.xeroclient.oauth.RsaSha1SignatureService;
+import com.connectifier.xeroclient.oauth.XeroOAuthService;
+
+/**
+ * Compares parsing the PEM key for every client with the key registry, and Scribe's signer,
+ * which initializes a new Signature per request, with the per-thread one. signRequest measures
+ * the whole of OAuth signing as the client does it for every request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class SigningBenchmark {
+
+  private static final String BASE_STRING = "GET&https%3A%2F%2Fapi.xero.com%2Fapi.xro%2F2.0%2FInvoices&"
+      + "oauth_consumer_key%3DCONSUMERKEY%26oauth_nonce%3D1234567890%26oauth_signature_method%3DRSA-SHA1"
+      + "%26oauth_timestamp%3D1396719320%26oauth_token%3DCONSUMERKEY%26oauth_version%3D1.0%26page%3D1";
+
+  private String pem;
+  private RSASha1SignatureService scribeSigner;
+  private RsaSha1SignatureService threadLocalSigner;
+  private BenchmarkClient client;
+
+  @Setup
+  public void setUp() {
+    pem = Fixtures.pem();
+    PrivateKey key = PrivateKeyRegistry.parse(pem);
+    scribeSigner = new RSASha1SignatureService(key);
+    threadLocalSigner = new RsaSha1SignatureService(key);
+    client = new BenchmarkClient();
+  }
+
+  @Benchmark
+  public PrivateKey parseKey() {
+    return PrivateKeyRegistry.parse(pem);
+  }
+
+  @Benchmark
+  public XeroOAuthService constructService() {
+    return new XeroOAuthService(new StringReader(pem));
+  }
+
+  @Benchmark
+  public String signScribe() {
+    return scribeSigner.getSignature(BASE_STRING, "", "");
+  }
+
+  @Benchmark
+  public String signThreadLocal() {
+    return threadLocalSigner.getSignature(BASE_STRING, "", "");
+  }
+
+  @Benchmark
+  public OAuthRequest signRequest() {
+    OAuthRequest request = new OAuthRequest(Verb.GET, "https://api.xero.com/api.xro/2.0/Invoices");
+    request.addQuerystringParameter("page", "1");
+    client.sign(request);
+    return request;
+  }
+
+}
@@ -0,0 +1,53 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.connectifier.xeroclient.models.Response;
+import com.google.common.base.Charsets;
+
+/**
+ * Measures parsing a response body the way the client does for a GET, for small (the
+ * checked-in fixture), medium and large pages of each entity type. Run with -prof gc to
+ * see the allocation per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class UnmarshalBenchmark {
+
+  @Param({"Invoices", "Contacts", "Journals"})
+  public String endPoint;
+
+  @Param({"3", "100", "1000"})
+  public int entities;
+
+  /** Whether to bind with the generated StAX codecs or with JAXB alone. */
+  @Param({"true", "false"})
+  public boolean codecs;
+
+  private BenchmarkClient client;
+  private byte[] body;
+
+  @Setup
+  public void setUp() {
+    client = new BenchmarkClient(codecs);
+    body = Fixtures.response(endPoint, entities).getBytes(Charsets.UTF_8);
+  }
+
+  @Benchmark
+  public Response unmarshallResponse() {
+    return client.unmarshall(endPoint, body);
+  }
+
+}
@@ -0,0 +1,746 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import com.connectifier.xeroclient.models.Account;
+import com.connectifier.xeroclient.models.BankTransaction;
+import com.connectifier.xeroclient.models.BankTransfer;
+import com.connectifier.xeroclient.models.BrandingTheme;
+import com.connectifier.xeroclient.models.Contact;
+import com.connectifier.xeroclient.models.CreditNote;
+import com.connectifier.xeroclient.models.Currency;
+import com.connectifier.xeroclient.models.Employee;
+import com.connectifier.xeroclient.models.ExpenseClaim;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.Item;
+import com.connectifier.xeroclient.models.Journal;
+import com.connectifier.xeroclient.models.ManualJournal;
+import com.connectifier.xeroclient.models.Organisation;
+import com.connectifier.xeroclient.models.Payment;
+import com.connectifier.xeroclient.models.Receipt;
+import com.connectifier.xeroclient.models.RepeatingInvoice;
+import com.connectifier.xeroclient.models.TaxRate;
+import com.connectifier.xeroclient.models.TrackingCategory;
+import com.connectifier.xeroclient.models.User;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Asynchronous twin of {@link XeroClient}. Each call signs, sends and unmarshals the request
+ * on the given executor and returns a future for the result.
+ *
+ * The underlying HTTP client blocks while waiting on the network, so the executor bounds the
+ * number of requests in flight. On JVMs with virtual threads, pass a virtual-thread-per-task
+ * executor to run thousands of concurrent requests on a handful of platform threads.
+ */
+public class AsyncXeroClient {
+
+  protected final XeroClient client;
+  protected final ListeningExecutorService executor;
+
+  public AsyncXeroClient(XeroClient client) {
+    this(client, XeroClient.DEFAULT_EXECUTOR);
+  }
+
+  public AsyncXeroClient(XeroClient client, ExecutorService executor) {
+    this.client = client;
+    this.executor = MoreExecutors.listeningDecorator(executor);
+  }
+
+  public XeroClient getClient() {
+    return client;
+  }
+
+  public ListenableFuture<Account> getAccount(final String id) {
+    return executor.submit(new Callable<Account>() {
+      @Override
+      public Account call() {
+        return client.getAccount(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Account>> getAccounts() {
+    return executor.submit(new Callable<List<Account>>() {
+      @Override
+      public List<Account> call() {
+        return client.getAccounts();
+      }
+    });
+  }
+
+  public ListenableFuture<List<Account>> getAccounts(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<Account>>() {
+      @Override
+      public List<Account> call() {
+        return client.getAccounts(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<BankTransaction> getBankTransaction(final String id) {
+    return executor.submit(new Callable<BankTransaction>() {
+      @Override
+      public BankTransaction call() {
+        return client.getBankTransaction(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<BankTransaction>> getBankTransactions() {
+    return executor.submit(new Callable<List<BankTransaction>>() {
+      @Override
+      public List<BankTransaction> call() {
+        return client.getBankTransactions();
+      }
+    });
+  }
+
+  public ListenableFuture<List<BankTransaction>> getBankTransactions(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<BankTransaction>>() {
+      @Override
+      public List<BankTransaction> call() {
+        return client.getBankTransactions(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<Integer> streamBankTransactions(final Date modifiedAfter, final String where, final String order, final EntityHandler<? super BankTransaction> handler) {
+    return executor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return client.streamBankTransactions(modifiedAfter, where, order, handler);
+      }
+    });
+  }
+
+  public ListenableFuture<List<BankTransaction>> createBankTransactions(final List<BankTransaction> bankTransactions) {
+    return executor.submit(new Callable<List<BankTransaction>>() {
+      @Override
+      public List<BankTransaction> call() {
+        return client.createBankTransactions(bankTransactions);
+      }
+    });
+  }
+
+  public ListenableFuture<List<BankTransaction>> createBankTransactions(final List<BankTransaction> bankTransactions, final boolean summarizeErrors) {
+    return executor.submit(new Callable<List<BankTransaction>>() {
+      @Override
+      public List<BankTransaction> call() {
+        return client.createBankTransactions(bankTransactions, summarizeErrors);
+      }
+    });
+  }
+
+  public ListenableFuture<List<BankTransaction>> createBankTransactions(final List<BankTransaction> bankTransactions, final boolean summarizeErrors, final String idempotencyKey) {
+    return executor.submit(new Callable<List<BankTransaction>>() {
+      @Override
+      public List<BankTransaction> call() {
+        return client.createBankTransactions(bankTransactions, summarizeErrors, idempotencyKey);
+      }
+    });
+  }
+
+  public ListenableFuture<List<BankTransaction>> createBankTransaction(final BankTransaction bankTransaction) {
+    return executor.submit(new Callable<List<BankTransaction>>() {
+      @Override
+      public List<BankTransaction> call() {
+        return client.createBankTransaction(bankTransaction);
+      }
+    });
+  }
+
+  public ListenableFuture<List<BankTransfer>> getBankTransfers() {
+    return executor.submit(new Callable<List<BankTransfer>>() {
+      @Override
+      public List<BankTransfer> call() {
+        return client.getBankTransfers();
+      }
+    });
+  }
+
+  public ListenableFuture<List<BrandingTheme>> getBrandingThemes() {
+    return executor.submit(new Callable<List<BrandingTheme>>() {
+      @Override
+      public List<BrandingTheme> call() {
+        return client.getBrandingThemes();
+      }
+    });
+  }
+
+  public ListenableFuture<List<BankTransaction>> getBrandingThemes(final String name, final Integer sortOrder, final Date createdDateUTC) {
+    return executor.submit(new Callable<List<BankTransaction>>() {
+      @Override
+      public List<BankTransaction> call() {
+        return client.getBrandingThemes(name, sortOrder, createdDateUTC);
+      }
+    });
+  }
+
+  public ListenableFuture<Contact> getContact(final String id) {
+    return executor.submit(new Callable<Contact>() {
+      @Override
+      public Contact call() {
+        return client.getContact(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Contact>> getContacts() {
+    return executor.submit(new Callable<List<Contact>>() {
+      @Override
+      public List<Contact> call() {
+        return client.getContacts();
+      }
+    });
+  }
+
+  public ListenableFuture<Map<String, Contact>> getContacts(final Collection<String> ids) {
+    return executor.submit(new Callable<Map<String, Contact>>() {
+      @Override
+      public Map<String, Contact> call() {
+        return client.getContacts(ids);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Contact>> getContacts(final Date modifiedAfter, final String where, final String order, final Integer page, final Boolean includedArchive) {
+    return executor.submit(new Callable<List<Contact>>() {
+      @Override
+      public List<Contact> call() {
+        return client.getContacts(modifiedAfter, where, order, page, includedArchive);
+      }
+    });
+  }
+
+  public ListenableFuture<Integer> streamContacts(final Date modifiedAfter, final String where, final String order, final Integer page, final Boolean includedArchive, final EntityHandler<? super Contact> handler) {
+    return executor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return client.streamContacts(modifiedAfter, where, order, page, includedArchive, handler);
+      }
+    });
+  }
+
+  public ListenableFuture<CreditNote> getCreditNote(final String id) {
+    return executor.submit(new Callable<CreditNote>() {
+      @Override
+      public CreditNote call() {
+        return client.getCreditNote(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<CreditNote>> getCreditNotes() {
+    return executor.submit(new Callable<List<CreditNote>>() {
+      @Override
+      public List<CreditNote> call() {
+        return client.getCreditNotes();
+      }
+    });
+  }
+
+  public ListenableFuture<List<CreditNote>> getCreditNotes(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<CreditNote>>() {
+      @Override
+      public List<CreditNote> call() {
+        return client.getCreditNotes(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Currency>> getCurrencies() {
+    return executor.submit(new Callable<List<Currency>>() {
+      @Override
+      public List<Currency> call() {
+        return client.getCurrencies();
+      }
+    });
+  }
+
+  public ListenableFuture<Employee> getEmployee(final String id) {
+    return executor.submit(new Callable<Employee>() {
+      @Override
+      public Employee call() {
+        return client.getEmployee(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Employee>> getEmployees() {
+    return executor.submit(new Callable<List<Employee>>() {
+      @Override
+      public List<Employee> call() {
+        return client.getEmployees();
+      }
+    });
+  }
+
+  public ListenableFuture<List<Employee>> getEmployees(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<Employee>>() {
+      @Override
+      public List<Employee> call() {
+        return client.getEmployees(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<List<ExpenseClaim>> getExpenseClaim(final String id) {
+    return executor.submit(new Callable<List<ExpenseClaim>>() {
+      @Override
+      public List<ExpenseClaim> call() {
+        return client.getExpenseClaim(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<ExpenseClaim>> getExpenseClaims() {
+    return executor.submit(new Callable<List<ExpenseClaim>>() {
+      @Override
+      public List<ExpenseClaim> call() {
+        return client.getExpenseClaims();
+      }
+    });
+  }
+
+  public ListenableFuture<List<ExpenseClaim>> getExpenseClaims(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<ExpenseClaim>>() {
+      @Override
+      public List<ExpenseClaim> call() {
+        return client.getExpenseClaims(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<Invoice> getInvoice(final String id) {
+    return executor.submit(new Callable<Invoice>() {
+      @Override
+      public Invoice call() {
+        return client.getInvoice(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> getInvoices() {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.getInvoices();
+      }
+    });
+  }
+
+  public ListenableFuture<Map<String, Invoice>> getInvoices(final Collection<String> ids) {
+    return executor.submit(new Callable<Map<String, Invoice>>() {
+      @Override
+      public Map<String, Invoice> call() {
+        return client.getInvoices(ids);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> getInvoices(final Date modifiedAfter, final String where, final String order, final Integer page) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.getInvoices(modifiedAfter, where, order, page);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> getInvoiceSummaries(final Date modifiedAfter, final String where, final String order, final Integer page) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.getInvoiceSummaries(modifiedAfter, where, order, page);
+      }
+    });
+  }
+
+  public ListenableFuture<Integer> streamInvoices(final Date modifiedAfter, final String where, final String order, final Integer page, final EntityHandler<? super Invoice> handler) {
+    return executor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return client.streamInvoices(modifiedAfter, where, order, page, handler);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> createInvoice(final Invoice invoice) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.createInvoice(invoice);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> updateInvoice(final Invoice invoice) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.updateInvoice(invoice);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Receipt>> createReceipts(final List<Receipt> receipts) {
+    return executor.submit(new Callable<List<Receipt>>() {
+      @Override
+      public List<Receipt> call() {
+        return client.createReceipts(receipts);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Receipt>> createReceipts(final List<Receipt> receipts, final boolean summarizeErrors) {
+    return executor.submit(new Callable<List<Receipt>>() {
+      @Override
+      public List<Receipt> call() {
+        return client.createReceipts(receipts, summarizeErrors);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Receipt>> createReceipts(final List<Receipt> receipts, final boolean summarizeErrors, final String idempotencyKey) {
+    return executor.submit(new Callable<List<Receipt>>() {
+      @Override
+      public List<Receipt> call() {
+        return client.createReceipts(receipts, summarizeErrors, idempotencyKey);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Receipt>> createReceipt(final Receipt receipt) {
+    return executor.submit(new Callable<List<Receipt>>() {
+      @Override
+      public List<Receipt> call() {
+        return client.createReceipt(receipt);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> createInvoices(final List<Invoice> invoices) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.createInvoices(invoices);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> createInvoices(final List<Invoice> invoices, final boolean summarizeErrors) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.createInvoices(invoices, summarizeErrors);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> createInvoices(final List<Invoice> invoices, final boolean summarizeErrors, final String idempotencyKey) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.createInvoices(invoices, summarizeErrors, idempotencyKey);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> updateInvoices(final List<Invoice> invoices) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.updateInvoices(invoices);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> updateInvoices(final List<Invoice> invoices, final boolean summarizeErrors) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.updateInvoices(invoices, summarizeErrors);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Invoice>> updateInvoices(final List<Invoice> invoices, final boolean summarizeErrors, final String idempotencyKey) {
+    return executor.submit(new Callable<List<Invoice>>() {
+      @Override
+      public List<Invoice> call() {
+        return client.updateInvoices(invoices, summarizeErrors, idempotencyKey);
+      }
+    });
+  }
+
+  public ListenableFuture<Item> getItem(final String id) {
+    return executor.submit(new Callable<Item>() {
+      @Override
+      public Item call() {
+        return client.getItem(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Item>> getItems() {
+    return executor.submit(new Callable<List<Item>>() {
+      @Override
+      public List<Item> call() {
+        return client.getItems();
+      }
+    });
+  }
+
+  public ListenableFuture<List<Item>> getItems(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<Item>>() {
+      @Override
+      public List<Item> call() {
+        return client.getItems(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<Journal> getJournal(final String id) {
+    return executor.submit(new Callable<Journal>() {
+      @Override
+      public Journal call() {
+        return client.getJournal(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Journal>> getJournals() {
+    return executor.submit(new Callable<List<Journal>>() {
+      @Override
+      public List<Journal> call() {
+        return client.getJournals();
+      }
+    });
+  }
+
+  public ListenableFuture<List<Journal>> getJournals(final Date modifiedAfter, final Integer offset, final String where, final String order) {
+    return executor.submit(new Callable<List<Journal>>() {
+      @Override
+      public List<Journal> call() {
+        return client.getJournals(modifiedAfter, offset, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<Integer> streamJournals(final Date modifiedAfter, final Integer offset, final String where, final String order, final EntityHandler<? super Journal> handler) {
+    return executor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return client.streamJournals(modifiedAfter, offset, where, order, handler);
+      }
+    });
+  }
+
+  public ListenableFuture<ManualJournal> getManualJournal(final String id) {
+    return executor.submit(new Callable<ManualJournal>() {
+      @Override
+      public ManualJournal call() {
+        return client.getManualJournal(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<ManualJournal>> getManualJournals() {
+    return executor.submit(new Callable<List<ManualJournal>>() {
+      @Override
+      public List<ManualJournal> call() {
+        return client.getManualJournals();
+      }
+    });
+  }
+
+  public ListenableFuture<List<ManualJournal>> getManualJournals(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<ManualJournal>>() {
+      @Override
+      public List<ManualJournal> call() {
+        return client.getManualJournals(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<List<ManualJournal>> createManualJournals(final List<ManualJournal> manualJournals) {
+    return executor.submit(new Callable<List<ManualJournal>>() {
+      @Override
+      public List<ManualJournal> call() {
+        return client.createManualJournals(manualJournals);
+      }
+    });
+  }
+
+  public ListenableFuture<List<ManualJournal>> createManualJournals(final List<ManualJournal> manualJournals, final boolean summarizeErrors) {
+    return executor.submit(new Callable<List<ManualJournal>>() {
+      @Override
+      public List<ManualJournal> call() {
+        return client.createManualJournals(manualJournals, summarizeErrors);
+      }
+    });
+  }
+
+  public ListenableFuture<List<ManualJournal>> createManualJournals(final List<ManualJournal> manualJournals, final boolean summarizeErrors, final String idempotencyKey) {
+    return executor.submit(new Callable<List<ManualJournal>>() {
+      @Override
+      public List<ManualJournal> call() {
+        return client.createManualJournals(manualJournals, summarizeErrors, idempotencyKey);
+      }
+    });
+  }
+
+  public ListenableFuture<Organisation> getOrganisation() {
+    return executor.submit(new Callable<Organisation>() {
+      @Override
+      public Organisation call() {
+        return client.getOrganisation();
+      }
+    });
+  }
+
+  public ListenableFuture<Payment> getPayments(final String id) {
+    return executor.submit(new Callable<Payment>() {
+      @Override
+      public Payment call() {
+        return client.getPayments(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Payment>> getPayments() {
+    return executor.submit(new Callable<List<Payment>>() {
+      @Override
+      public List<Payment> call() {
+        return client.getPayments();
+      }
+    });
+  }
+
+  public ListenableFuture<List<Payment>> getPayments(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<Payment>>() {
+      @Override
+      public List<Payment> call() {
+        return client.getPayments(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<Receipt> getReceipt(final String id) {
+    return executor.submit(new Callable<Receipt>() {
+      @Override
+      public Receipt call() {
+        return client.getReceipt(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<Receipt>> getReceipts() {
+    return executor.submit(new Callable<List<Receipt>>() {
+      @Override
+      public List<Receipt> call() {
+        return client.getReceipts();
+      }
+    });
+  }
+
+  public ListenableFuture<List<Receipt>> getReceipts(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<Receipt>>() {
+      @Override
+      public List<Receipt> call() {
+        return client.getReceipts(modifiedAfter, where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<List<RepeatingInvoice>> getRepeatingInvoices() {
+    return executor.submit(new Callable<List<RepeatingInvoice>>() {
+      @Override
+      public List<RepeatingInvoice> call() {
+        return client.getRepeatingInvoices();
+      }
+    });
+  }
+
+  public ListenableFuture<List<TaxRate>> getTaxRates() {
+    return executor.submit(new Callable<List<TaxRate>>() {
+      @Override
+      public List<TaxRate> call() {
+        return client.getTaxRates();
+      }
+    });
+  }
+
+  public ListenableFuture<List<TaxRate>> getTaxRates(final String where, final String order) {
+    return executor.submit(new Callable<List<TaxRate>>() {
+      @Override
+      public List<TaxRate> call() {
+        return client.getTaxRates(where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<TrackingCategory> getTrackingCategory(final String id) {
+    return executor.submit(new Callable<TrackingCategory>() {
+      @Override
+      public TrackingCategory call() {
+        return client.getTrackingCategory(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<TrackingCategory>> getTrackingCategories() {
+    return executor.submit(new Callable<List<TrackingCategory>>() {
+      @Override
+      public List<TrackingCategory> call() {
+        return client.getTrackingCategories();
+      }
+    });
+  }
+
+  public ListenableFuture<List<TrackingCategory>> getTrackingCategories(final String where, final String order) {
+    return executor.submit(new Callable<List<TrackingCategory>>() {
+      @Override
+      public List<TrackingCategory> call() {
+        return client.getTrackingCategories(where, order);
+      }
+    });
+  }
+
+  public ListenableFuture<User> getUser(final String id) {
+    return executor.submit(new Callable<User>() {
+      @Override
+      public User call() {
+        return client.getUser(id);
+      }
+    });
+  }
+
+  public ListenableFuture<List<User>> getUsers() {
+    return executor.submit(new Callable<List<User>>() {
+      @Override
+      public List<User> call() {
+        return client.getUsers();
+      }
+    });
+  }
+
+  public ListenableFuture<List<User>> getUsers(final Date modifiedAfter, final String where, final String order) {
+    return executor.submit(new Callable<List<User>>() {
+      @Override
+      public List<User> call() {
+        return client.getUsers(modifiedAfter, where, order);
+      }
+    });
+  }
+
+}
@@ -0,0 +1,172 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.connectifier.xeroclient.models.ValidationError;
+
+/**
+ * Outcome of a {@link BulkWriter} call, with one result per input item in input order.
+ */
+public class BulkResult<T> {
+
+  private final List<Chunk<T>> chunks;
+  private final BulkWriter.Operation<T> operation;
+
+  BulkResult(List<Chunk<T>> chunks, BulkWriter.Operation<T> operation) {
+    this.chunks = chunks;
+    this.operation = operation;
+  }
+
+  BulkWriter.Operation<T> getOperation() {
+    return operation;
+  }
+
+  public List<Chunk<T>> getChunks() {
+    return Collections.unmodifiableList(chunks);
+  }
+
+  /**
+   * Chunks whose request failed as a whole, for example because of a network error. These
+   * can be sent again on their own with {@link BulkWriter#retryFailed(BulkResult)}.
+   */
+  public List<Chunk<T>> getFailedChunks() {
+    List<Chunk<T>> failed = new ArrayList<>();
+    for (Chunk<T> chunk : chunks) {
+      if (chunk.getFailure() != null) {
+        failed.add(chunk);
+      }
+    }
+    return failed;
+  }
+
+  public List<Item<T>> getItems() {
+    List<Item<T>> items = new ArrayList<>();
+    for (Chunk<T> chunk : chunks) {
+      items.addAll(chunk.getItems());
+    }
+    return items;
+  }
+
+  /**
+   * Whether every item was written without validation errors.
+   */
+  public boolean isSuccess() {
+    for (Item<T> item : getItems()) {
+      if (!item.isSuccess()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static class Chunk<T> {
+    private final int offset;
+    private final List<T> inputs;
+    private final String idempotencyKey;
+    private List<Item<T>> items;
+    private RuntimeException failure;
+
+    Chunk(int offset, List<T> inputs, String idempotencyKey) {
+      this.offset = offset;
+      this.inputs = inputs;
+      this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * The index of the chunk's first item in the input.
+     */
+    public int getOffset() {
+      return offset;
+    }
+
+    public List<T> getInputs() {
+      return inputs;
+    }
+
+    /**
+     * The key the chunk is sent with, the same on every attempt.
+     */
+    public String getIdempotencyKey() {
+      return idempotencyKey;
+    }
+
+    public RuntimeException getFailure() {
+      return failure;
+    }
+
+    public List<Item<T>> getItems() {
+      return items;
+    }
+
+    void succeeded(List<T> results, BulkWriter.Operation<T> operation) {
+      List<Item<T>> items = new ArrayList<>(inputs.size());
+      for (int i = 0; i < inputs.size(); i++) {
+        T result = results.get(i);
+        List<String> errors = new ArrayList<>();
+        for (ValidationError error : operation.getValidationErrors(result)) {
+          errors.add(error.getMessage());
+        }
+        items.add(new Item<>(offset + i, inputs.get(i), result, errors, null));
+      }
+      this.items = items;
+      this.failure = null;
+    }
+
+    void failed(RuntimeException failure) {
+      List<Item<T>> items = new ArrayList<>(inputs.size());
+      for (int i = 0; i < inputs.size(); i++) {
+        items.add(new Item<T>(offset + i, inputs.get(i), null, Collections.<String>emptyList(), failure));
+      }
+      this.items = items;
+      this.failure = failure;
+    }
+  }
+
+  public static class Item<T> {
+    private final int index;
+    private final T input;
+    private final T result;
+    private final List<String> validationErrors;
+    private final RuntimeException failure;
+
+    Item(int index, T input, T result, List<String> validationErrors, RuntimeException failure) {
+      this.index = index;
+      this.input = input;
+      this.result = result;
+      this.validationErrors = validationErrors;
+      this.failure = failure;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public T getInput() {
+      return input;
+    }
+
+    /**
+     * The entity as returned by Xero, or null if the chunk's request failed.
+     */
+    public T getResult() {
+      return result;
+    }
+
+    public List<String> getValidationErrors() {
+      return validationErrors;
+    }
+
+    public RuntimeException getFailure() {
+      return failure;
+    }
+
+    public boolean isSuccess() {
+      return failure == null && validationErrors.isEmpty();
+    }
+  }
+
+}
@@ -0,0 +1,264 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.JAXBElement;
+
+import com.connectifier.xeroclient.models.BankTransaction;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.ManualJournal;
+import com.connectifier.xeroclient.models.Receipt;
+import com.connectifier.xeroclient.models.ValidationError;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.base.Utf8;
+
+/**
+ * Splits bulk writes into chunks and submits them with bounded parallelism.
+ *
+ * Chunks are bounded by the number of items. Writes of large entities can also bound them by
+ * the size of their marshalled XML, since Xero rejects requests over 3.5MB and the XML grows
+ * once it is form encoded. That marshals every item an extra time to measure it, so it is off
+ * unless a byte limit is given. An item larger than the limit on its own is sent by itself.
+ *
+ * Chunks are sent with summarizeErrors=false, so a bad record is reported on its own result
+ * instead of failing its whole chunk. Chunks that fail as a whole, for example because of a
+ * network error, are recorded on the result and can be retried on their own. Each chunk keeps
+ * its idempotency key across retries, so that a chunk Xero did process isn't created twice.
+ */
+public class BulkWriter {
+
+  public static final int DEFAULT_CHUNK_SIZE = 50;
+  /** Chunks aren't measured, only the number of items bounds them. */
+  public static final long NO_BYTE_LIMIT = 0;
+  public static final int DEFAULT_PARALLELISM = 2;
+
+  protected final XeroClient client;
+  protected final ExecutorService executor;
+  protected final int chunkSize;
+  protected final long maxChunkBytes;
+  protected final int parallelism;
+
+  public BulkWriter(XeroClient client) {
+    this(client, XeroClient.DEFAULT_EXECUTOR, DEFAULT_CHUNK_SIZE, DEFAULT_PARALLELISM);
+  }
+
+  public BulkWriter(XeroClient client, ExecutorService executor, int chunkSize, int parallelism) {
+    this(client, executor, chunkSize, NO_BYTE_LIMIT, parallelism);
+  }
+
+  /**
+   * @param maxChunkBytes the most marshalled XML to send in one chunk, or {@link #NO_BYTE_LIMIT}
+   */
+  public BulkWriter(XeroClient client, ExecutorService executor, int chunkSize, long maxChunkBytes, int parallelism) {
+    Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+    Preconditions.checkArgument(maxChunkBytes >= 0, "maxChunkBytes must not be negative");
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+    this.client = client;
+    this.executor = executor;
+    this.chunkSize = chunkSize;
+    this.maxChunkBytes = maxChunkBytes;
+    this.parallelism = parallelism;
+  }
+
+  public BulkResult<Invoice> createInvoices(List<Invoice> invoices) {
+    return write(invoices, new Operation<Invoice>() {
+      @Override
+      public List<Invoice> write(List<Invoice> chunk, String idempotencyKey) {
+        return client.createInvoices(chunk, false, idempotencyKey);
+      }
+
+      @Override
+      public List<ValidationError> getValidationErrors(Invoice invoice) {
+        return invoice.getValidationErrors();
+      }
+
+      @Override
+      public long getPayloadBytes(Invoice invoice) {
+        return payloadBytes(client.wrapInvoices(Collections.singletonList(invoice)));
+      }
+    });
+  }
+
+  public BulkResult<Invoice> updateInvoices(List<Invoice> invoices) {
+    return write(invoices, new Operation<Invoice>() {
+      @Override
+      public List<Invoice> write(List<Invoice> chunk, String idempotencyKey) {
+        return client.updateInvoices(chunk, false, idempotencyKey);
+      }
+
+      @Override
+      public List<ValidationError> getValidationErrors(Invoice invoice) {
+        return invoice.getValidationErrors();
+      }
+
+      @Override
+      public long getPayloadBytes(Invoice invoice) {
+        return payloadBytes(client.wrapInvoices(Collections.singletonList(invoice)));
+      }
+    });
+  }
+
+  public BulkResult<BankTransaction> createBankTransactions(List<BankTransaction> bankTransactions) {
+    return write(bankTransactions, new Operation<BankTransaction>() {
+      @Override
+      public List<BankTransaction> write(List<BankTransaction> chunk, String idempotencyKey) {
+        return client.createBankTransactions(chunk, false, idempotencyKey);
+      }
+
+      @Override
+      public List<ValidationError> getValidationErrors(BankTransaction bankTransaction) {
+        return bankTransaction.getValidationErrors();
+      }
+
+      @Override
+      public long getPayloadBytes(BankTransaction bankTransaction) {
+        return payloadBytes(client.wrapBankTransactions(Collections.singletonList(bankTransaction)));
+      }
+    });
+  }
+
+  public BulkResult<Receipt> createReceipts(List<Receipt> receipts) {
+    return write(receipts, new Operation<Receipt>() {
+      @Override
+      public List<Receipt> write(List<Receipt> chunk, String idempotencyKey) {
+        return client.createReceipts(chunk, false, idempotencyKey);
+      }
+
+      @Override
+      public List<ValidationError> getValidationErrors(Receipt receipt) {
+        return receipt.getValidationErrors();
+      }
+
+      @Override
+      public long getPayloadBytes(Receipt receipt) {
+        return payloadBytes(client.wrapReceipts(Collections.singletonList(receipt)));
+      }
+    });
+  }
+
+  public BulkResult<ManualJournal> createManualJournals(List<ManualJournal> manualJournals) {
+    return write(manualJournals, new Operation<ManualJournal>() {
+      @Override
+      public List<ManualJournal> write(List<ManualJournal> chunk, String idempotencyKey) {
+        return client.createManualJournals(chunk, false, idempotencyKey);
+      }
+
+      @Override
+      public List<ValidationError> getValidationErrors(ManualJournal manualJournal) {
+        return manualJournal.getValidationErrors();
+      }
+
+      @Override
+      public long getPayloadBytes(ManualJournal manualJournal) {
+        return payloadBytes(client.wrapManualJournals(Collections.singletonList(manualJournal)));
+      }
+    });
+  }
+
+  /**
+   * Sends the chunks that failed as a whole again, updating the result in place.
+   */
+  public <T> BulkResult<T> retryFailed(BulkResult<T> result) {
+    execute(result.getFailedChunks(), result.getOperation());
+    return result;
+  }
+
+  protected <T> BulkResult<T> write(List<T> items, Operation<T> operation) {
+    List<BulkResult.Chunk<T>> chunks = new ArrayList<>();
+    int offset = 0;
+    long bytes = 0;
+    for (int i = 0; i < items.size(); i++) {
+      long itemBytes = maxChunkBytes == NO_BYTE_LIMIT ? 0 : operation.getPayloadBytes(items.get(i));
+      if (i > offset && (i - offset == chunkSize
+          || (maxChunkBytes != NO_BYTE_LIMIT && bytes + itemBytes > maxChunkBytes))) {
+        chunks.add(newChunk(items, offset, i));
+        offset = i;
+        bytes = 0;
+      }
+      bytes += itemBytes;
+    }
+    if (offset < items.size()) {
+      chunks.add(newChunk(items, offset, items.size()));
+    }
+    execute(chunks, operation);
+    return new BulkResult<>(chunks, operation);
+  }
+
+  private static <T> BulkResult.Chunk<T> newChunk(List<T> items, int from, int to) {
+    return new BulkResult.Chunk<>(from, new ArrayList<>(items.subList(from, to)), UUID.randomUUID().toString());
+  }
+
+  /**
+   * The size of the element's XML as it is sent, in UTF-8.
+   */
+  protected long payloadBytes(JAXBElement<?> element) {
+    return Utf8.encodedLength(client.marshallRequest(element));
+  }
+
+  protected <T> void execute(List<BulkResult.Chunk<T>> chunks, final Operation<T> operation) {
+    final Queue<BulkResult.Chunk<T>> queue = new ConcurrentLinkedQueue<>(chunks);
+    List<Future<?>> workers = new ArrayList<>();
+    for (int i = 0; i < Math.min(parallelism, chunks.size()); i++) {
+      workers.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          BulkResult.Chunk<T> chunk;
+          while ((chunk = queue.poll()) != null) {
+            writeChunk(chunk, operation);
+          }
+        }
+      }));
+    }
+    for (Future<?> worker : workers) {
+      try {
+        worker.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted during bulk write", e);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+  }
+
+  protected <T> void writeChunk(BulkResult.Chunk<T> chunk, Operation<T> operation) {
+    try {
+      List<T> results = operation.write(chunk.getInputs(), chunk.getIdempotencyKey());
+      if (results.size() != chunk.getInputs().size()) {
+        throw new IllegalStateException("Sent " + chunk.getInputs().size() + " items but got " + results.size() + " back");
+      }
+      chunk.succeeded(results, operation);
+    } catch (RuntimeException e) {
+      chunk.failed(e);
+    }
+  }
+
+  /**
+   * Writes one chunk of a given entity type.
+   */
+  protected abstract static class Operation<T> {
+    public abstract List<T> write(List<T> chunk, String idempotencyKey);
+
+    public abstract List<ValidationError> getValidationErrors(T result);
+
+    /**
+     * The size of the item once marshalled, only asked for when the writer has a byte limit.
+     * Operations that can't measure their items return 0, so only their count bounds a chunk.
+     */
+    public long getPayloadBytes(T item) {
+      return 0;
+    }
+  }
+
+}
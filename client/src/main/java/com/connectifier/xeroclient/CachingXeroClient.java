@@ -0,0 +1,246 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.io.Reader;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBElement;
+
+import org.scribe.model.Verb;
+
+import com.connectifier.xeroclient.models.Response;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A client that caches reference data such as accounts, tax rates and currencies, which
+ * rarely changes but is read before almost every write.
+ *
+ * Entries expire after a TTL and are refreshed in the background once they're older than
+ * the refresh interval, while callers keep getting the old value. Accounts are revalidated
+ * with If-Modified-Since and only refetched if something changed. Concurrent misses for the
+ * same request share a single fetch.
+ *
+ * Single contacts, invoices, items and bank transactions looked up by ID are kept in a
+ * size-bounded entity cache with a shorter TTL, where concurrent misses also share a single
+ * fetch. List fetches that return complete entities warm that cache.
+ *
+ * Writes to an endpoint invalidate its entries in both caches. Cached entities are shared
+ * between callers and must not be modified.
+ */
+public class CachingXeroClient extends XeroClient {
+
+  public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+  public static final long DEFAULT_REFRESH_MILLIS = TimeUnit.MINUTES.toMillis(15);
+  public static final long DEFAULT_MAXIMUM_SIZE = 100;
+  public static final long DEFAULT_ENTITY_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  public static final long DEFAULT_ENTITY_MAXIMUM_SIZE = 10000;
+
+  protected static final Set<String> REFERENCE_END_POINTS =
+      ImmutableSet.of("Accounts", "BrandingThemes", "Currencies", "TaxRates", "TrackingCategories");
+  /** Endpoints that honor If-Modified-Since and so can be revalidated instead of refetched. */
+  protected static final Set<String> REVALIDATED_END_POINTS = ImmutableSet.of("Accounts");
+
+  protected static final Map<String, EntityType<?>> ENTITY_TYPES = ImmutableMap.<String, EntityType<?>>of(
+      BANK_TRANSACTIONS.endPoint, BANK_TRANSACTIONS,
+      CONTACTS.endPoint, CONTACTS,
+      INVOICES.endPoint, INVOICES,
+      ITEMS.endPoint, ITEMS);
+
+  protected final LoadingCache<RequestKey, CachedResponse> referenceData;
+  protected final LoadingCache<RequestKey, CachedResponse> entities;
+
+  public CachingXeroClient(Reader pemReader, String consumerKey, String consumerSecret) {
+    this(pemReader, consumerKey, consumerSecret, DEFAULT_TTL_MILLIS, DEFAULT_REFRESH_MILLIS, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  public CachingXeroClient(Reader pemReader, String consumerKey, String consumerSecret,
+      long ttlMillis, long refreshMillis, long maximumSize) {
+    this(pemReader, consumerKey, consumerSecret, ttlMillis, refreshMillis, maximumSize,
+        DEFAULT_ENTITY_TTL_MILLIS, DEFAULT_ENTITY_MAXIMUM_SIZE);
+  }
+
+  /**
+   * @param entityMaximumSize the number of entities to keep, least recently used first out.
+   *     Pass 0 to only coalesce concurrent lookups.
+   */
+  public CachingXeroClient(Reader pemReader, String consumerKey, String consumerSecret,
+      long ttlMillis, long refreshMillis, long maximumSize, long entityTtlMillis, long entityMaximumSize) {
+    super(pemReader, consumerKey, consumerSecret);
+    referenceData = CacheBuilder.newBuilder()
+        .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+        .refreshAfterWrite(refreshMillis, TimeUnit.MILLISECONDS)
+        .maximumSize(maximumSize)
+        .build(new CacheLoader<RequestKey, CachedResponse>() {
+          @Override
+          public CachedResponse load(RequestKey key) {
+            return fetch(key);
+          }
+
+          @Override
+          public ListenableFuture<CachedResponse> reload(final RequestKey key, final CachedResponse old) {
+            ListenableFutureTask<CachedResponse> task = ListenableFutureTask.create(new Callable<CachedResponse>() {
+              @Override
+              public CachedResponse call() {
+                return revalidate(key, old);
+              }
+            });
+            executor.execute(task);
+            return task;
+          }
+        });
+    entities = CacheBuilder.newBuilder()
+        .expireAfterWrite(entityTtlMillis, TimeUnit.MILLISECONDS)
+        .maximumSize(entityMaximumSize)
+        .build(new CacheLoader<RequestKey, CachedResponse>() {
+          @Override
+          public CachedResponse load(RequestKey key) {
+            return fetch(key);
+          }
+        });
+  }
+
+  @Override
+  protected Response get(String endPoint, Date modifiedAfter, Map<String,String> params) {
+    if (modifiedAfter == null) {
+      if (REFERENCE_END_POINTS.contains(endPoint)) {
+        return lookup(referenceData, new RequestKey(endPoint, params));
+      }
+      String[] path = endPoint.split("/");
+      if (path.length == 2 && ENTITY_TYPES.containsKey(path[0]) && (params == null || params.isEmpty())) {
+        return lookup(entities, new RequestKey(endPoint, params));
+      }
+    }
+    Date fetched = new Date();
+    Response response = super.get(endPoint, modifiedAfter, params);
+    EntityType<?> type = ENTITY_TYPES.get(endPoint);
+    if (type != null && type.isComplete(params)) {
+      warm(endPoint, type, response, fetched);
+    }
+    return response;
+  }
+
+  private static Response lookup(LoadingCache<RequestKey, CachedResponse> cache, RequestKey key) {
+    try {
+      return cache.getUnchecked(key).response;
+    } catch (UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private <T> void warm(String endPoint, EntityType<T> type, Response response, Date fetched) {
+    for (T entity : type.entities(response)) {
+      String id = type.id(entity);
+      if (id != null) {
+        Response single = new Response();
+        type.wrap(single, entity);
+        entities.put(new RequestKey(endPoint + "/" + id, null), new CachedResponse(single, fetched));
+      }
+    }
+  }
+
+  @Override
+  protected Response write(Verb verb, String endPoint, JAXBElement<?> object, Map<String,String> params,
+      String idempotencyKey) {
+    try {
+      return super.write(verb, endPoint, object, params, idempotencyKey);
+    } finally {
+      // a failed write may still have been applied
+      invalidate(endPoint);
+    }
+  }
+
+  /**
+   * Drops the cached entries for the endpoint the given path belongs to.
+   */
+  public void invalidate(String endPoint) {
+    String root = endPoint.split("/")[0];
+    for (RequestKey key : referenceData.asMap().keySet()) {
+      if (key.endPoint.equals(root)) {
+        referenceData.invalidate(key);
+      }
+    }
+    for (RequestKey key : entities.asMap().keySet()) {
+      if (key.endPoint.startsWith(root + "/")) {
+        entities.invalidate(key);
+      }
+    }
+  }
+
+  public void invalidateAll() {
+    referenceData.invalidateAll();
+    entities.invalidateAll();
+  }
+
+  protected CachedResponse fetch(RequestKey key) {
+    Date fetched = new Date();
+    return new CachedResponse(super.get(key.endPoint, null, key.params), fetched);
+  }
+
+  protected CachedResponse revalidate(RequestKey key, CachedResponse old) {
+    if (!REVALIDATED_END_POINTS.contains(key.endPoint)) {
+      return fetch(key);
+    }
+    Date fetched = new Date();
+    try {
+      if (super.get(key.endPoint, old.fetched, key.params).getAccounts().isEmpty()) {
+        return new CachedResponse(old.response, fetched);
+      }
+    } catch (XeroApiException e) {
+      if (e.getResponseCode() != 304) {
+        throw e;
+      }
+      return new CachedResponse(old.response, fetched);
+    }
+    return fetch(key);
+  }
+
+  protected static class RequestKey {
+    final String endPoint;
+    final ImmutableSortedMap<String, String> params;
+
+    RequestKey(String endPoint, Map<String, String> params) {
+      this.endPoint = endPoint;
+      this.params = params == null ? ImmutableSortedMap.<String, String>of() : ImmutableSortedMap.copyOf(params);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof RequestKey)) {
+        return false;
+      }
+      RequestKey other = (RequestKey) obj;
+      return endPoint.equals(other.endPoint) && params.equals(other.params);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(endPoint, params);
+    }
+  }
+
+  protected static class CachedResponse {
+    final Response response;
+    final Date fetched;
+
+    CachedResponse(Response response, Date fetched) {
+      this.response = response;
+      this.fetched = fetched;
+    }
+  }
+
+}
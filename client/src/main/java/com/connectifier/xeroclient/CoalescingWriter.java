@@ -0,0 +1,261 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.connectifier.xeroclient.models.BankTransaction;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.Receipt;
+import com.connectifier.xeroclient.models.ValidationError;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Collects single-item creates and sends them to Xero as one batched PUT.
+ *
+ * A batch is sent once it reaches the maximum batch size or once its first item has waited
+ * for the linger time. Each caller's future completes with the entity Xero returned for its
+ * own item, or fails with a {@link XeroApiException} carrying that item's validation errors.
+ * A XeroClient talks to a single tenant, so each writer batches writes for one tenant.
+ */
+public class CoalescingWriter implements Closeable {
+
+  public static final long DEFAULT_LINGER_MILLIS = 100;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+  protected final XeroClient client;
+  protected final ExecutorService executor;
+  protected final ScheduledExecutorService scheduler;
+  protected final long lingerMillis;
+  protected final int maxBatchSize;
+
+  private final Batcher<Invoice> invoices;
+  private final Batcher<Receipt> receipts;
+  private final Batcher<BankTransaction> bankTransactions;
+  private volatile boolean closed;
+
+  public CoalescingWriter(XeroClient client) {
+    this(client, DEFAULT_LINGER_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  public CoalescingWriter(XeroClient client, long lingerMillis, int maxBatchSize) {
+    this(client, client.executor, lingerMillis, maxBatchSize);
+  }
+
+  public CoalescingWriter(final XeroClient client, ExecutorService executor, long lingerMillis, int maxBatchSize) {
+    Preconditions.checkArgument(lingerMillis >= 0, "lingerMillis must not be negative");
+    Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+    this.client = client;
+    this.executor = executor;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("xero-coalescing-writer-%d").build());
+    this.lingerMillis = lingerMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.invoices = new Batcher<>(new BulkWriter.Operation<Invoice>() {
+      @Override
+      public List<Invoice> write(List<Invoice> batch, String idempotencyKey) {
+        return client.createInvoices(batch, false, idempotencyKey);
+      }
+
+      @Override
+      public List<ValidationError> getValidationErrors(Invoice invoice) {
+        return invoice.getValidationErrors();
+      }
+    });
+    this.receipts = new Batcher<>(new BulkWriter.Operation<Receipt>() {
+      @Override
+      public List<Receipt> write(List<Receipt> batch, String idempotencyKey) {
+        return client.createReceipts(batch, false, idempotencyKey);
+      }
+
+      @Override
+      public List<ValidationError> getValidationErrors(Receipt receipt) {
+        return receipt.getValidationErrors();
+      }
+    });
+    this.bankTransactions = new Batcher<>(new BulkWriter.Operation<BankTransaction>() {
+      @Override
+      public List<BankTransaction> write(List<BankTransaction> batch, String idempotencyKey) {
+        return client.createBankTransactions(batch, false, idempotencyKey);
+      }
+
+      @Override
+      public List<ValidationError> getValidationErrors(BankTransaction bankTransaction) {
+        return bankTransaction.getValidationErrors();
+      }
+    });
+  }
+
+  public ListenableFuture<Invoice> createInvoice(Invoice invoice) {
+    return invoices.add(invoice);
+  }
+
+  public ListenableFuture<Receipt> createReceipt(Receipt receipt) {
+    return receipts.add(receipt);
+  }
+
+  public ListenableFuture<BankTransaction> createBankTransaction(BankTransaction bankTransaction) {
+    return bankTransactions.add(bankTransaction);
+  }
+
+  /**
+   * Sends everything that is waiting without waiting for the linger time.
+   */
+  public void flush() {
+    invoices.flush();
+    receipts.flush();
+    bankTransactions.flush();
+  }
+
+  /**
+   * Flushes pending writes and stops the linger timer. Writes already sent still complete,
+   * while writes added afterwards are rejected with an IllegalStateException.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    flush();
+    scheduler.shutdown();
+  }
+
+  private static class Pending<T> {
+    final T item;
+    final SettableFuture<T> future = SettableFuture.create();
+
+    Pending(T item) {
+      this.item = item;
+    }
+  }
+
+  protected class Batcher<T> {
+    private final BulkWriter.Operation<T> operation;
+    private List<Pending<T>> pending = new ArrayList<>();
+    /** Counts the batches drained, so that a linger timer only ever flushes its own batch. */
+    private long drained;
+    private ScheduledFuture<?> lingerTimer;
+
+    Batcher(BulkWriter.Operation<T> operation) {
+      this.operation = operation;
+    }
+
+    ListenableFuture<T> add(T item) {
+      Pending<T> entry = new Pending<>(item);
+      List<Pending<T>> batch = null;
+      synchronized (this) {
+        // checked under the lock, so that close() flushes everything added before it
+        if (closed) {
+          throw new IllegalStateException("CoalescingWriter is closed");
+        }
+        pending.add(entry);
+        if (pending.size() >= maxBatchSize) {
+          batch = drain();
+        } else if (pending.size() == 1) {
+          scheduleFlush();
+        }
+      }
+      if (batch != null) {
+        submit(batch);
+      }
+      return entry.future;
+    }
+
+    void flush() {
+      List<Pending<T>> batch;
+      synchronized (this) {
+        batch = drain();
+      }
+      if (!batch.isEmpty()) {
+        submit(batch);
+      }
+    }
+
+    private void flush(long batchNumber) {
+      List<Pending<T>> batch;
+      synchronized (this) {
+        if (batchNumber != drained) {
+          // the batch the timer was started for has already been sent
+          return;
+        }
+        batch = drain();
+      }
+      if (!batch.isEmpty()) {
+        submit(batch);
+      }
+    }
+
+    private List<Pending<T>> drain() {
+      if (lingerTimer != null) {
+        lingerTimer.cancel(false);
+        lingerTimer = null;
+      }
+      drained++;
+      List<Pending<T>> batch = pending;
+      pending = new ArrayList<>();
+      return batch;
+    }
+
+    private void scheduleFlush() {
+      final long batchNumber = drained;
+      lingerTimer = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          flush(batchNumber);
+        }
+      }, lingerMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void submit(final List<Pending<T>> batch) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          send(batch);
+        }
+      });
+    }
+
+    protected void send(List<Pending<T>> batch) {
+      List<T> items = new ArrayList<>(batch.size());
+      for (Pending<T> entry : batch) {
+        items.add(entry.item);
+      }
+      List<T> results;
+      try {
+        results = operation.write(items, UUID.randomUUID().toString());
+        if (results.size() != items.size()) {
+          throw new IllegalStateException("Sent " + items.size() + " items but got " + results.size() + " back");
+        }
+      } catch (RuntimeException e) {
+        for (Pending<T> entry : batch) {
+          entry.future.setException(e);
+        }
+        return;
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        T result = results.get(i);
+        List<ValidationError> errors = operation.getValidationErrors(result);
+        if (errors.isEmpty()) {
+          batch.get(i).future.set(result);
+        } else {
+          List<String> messages = new ArrayList<>();
+          for (ValidationError error : errors) {
+            messages.add(error.getMessage());
+          }
+          batch.get(i).future.setException(new XeroApiException(400, Joiner.on(", ").join(messages)));
+        }
+      }
+    }
+  }
+
+}
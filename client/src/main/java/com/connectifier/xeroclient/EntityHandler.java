@@ -0,0 +1,12 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+/**
+ * Receives entities one at a time as a response is streamed.
+ */
+public interface EntityHandler<T> {
+
+  void handle(T entity);
+
+}
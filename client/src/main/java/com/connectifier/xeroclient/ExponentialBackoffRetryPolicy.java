@@ -0,0 +1,131 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.Random;
+
+import org.scribe.exceptions.OAuthConnectionException;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Verb;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Retries transient failures with exponential backoff and full jitter, honoring the
+ * Retry-After header when Xero sends one. A failure whose Retry-After is longer than the
+ * maximum delay isn't retried.
+ *
+ * GETs are always safe to retry. Writes are only retried when they carry an idempotency key,
+ * so that a replay can't create duplicates.
+ *
+ * Retries draw from a budget that is refilled by a fraction of each success, so during an
+ * outage retries can't multiply the load on Xero.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+  public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+  private final int maxAttempts;
+  private final long baseDelayMillis;
+  private final long maxDelayMillis;
+  private final double budgetRatio;
+  private final double maxBudget;
+  private final Random random;
+  private double budget;
+
+  /**
+   * Up to 3 attempts, starting from a 500ms delay capped at 30s, with retries limited to
+   * roughly 10% of successful requests plus a reserve of 10.
+   */
+  public ExponentialBackoffRetryPolicy() {
+    this(3, 500, 30000, 0.1, 10);
+  }
+
+  public ExponentialBackoffRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+      double budgetRatio, double maxBudget) {
+    this(maxAttempts, baseDelayMillis, maxDelayMillis, budgetRatio, maxBudget, new Random());
+  }
+
+  protected ExponentialBackoffRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+      double budgetRatio, double maxBudget, Random random) {
+    Preconditions.checkArgument(maxAttempts >= 1, "maxAttempts must be at least 1");
+    this.maxAttempts = maxAttempts;
+    this.baseDelayMillis = baseDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.budgetRatio = budgetRatio;
+    this.maxBudget = maxBudget;
+    this.random = random;
+    this.budget = maxBudget;
+  }
+
+  @Override
+  public long retryDelayMillis(OAuthRequest request, int attempt, RuntimeException failure) {
+    if (attempt >= maxAttempts || !isSafe(request) || !isTransient(failure)) {
+      return -1;
+    }
+    Long retryAfter = retryAfterMillis(failure);
+    // retrying any sooner than Xero asked would only be rejected again
+    if (retryAfter != null && retryAfter > maxDelayMillis) {
+      return -1;
+    }
+    if (!withdrawBudget()) {
+      return -1;
+    }
+    if (retryAfter != null) {
+      return retryAfter;
+    }
+    long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+    return (long) (random.nextDouble() * ceiling);
+  }
+
+  @Override
+  public synchronized void onSuccess() {
+    budget = Math.min(maxBudget, budget + budgetRatio);
+  }
+
+  private synchronized boolean withdrawBudget() {
+    if (budget < 1) {
+      return false;
+    }
+    budget -= 1;
+    return true;
+  }
+
+  protected boolean isSafe(OAuthRequest request) {
+    return request.getVerb() == Verb.GET || request.getHeaders().containsKey(XeroClient.IDEMPOTENCY_KEY_HEADER);
+  }
+
+  protected boolean isTransient(RuntimeException failure) {
+    if (failure instanceof OAuthConnectionException) {
+      return true;
+    }
+    if (failure instanceof XeroClientRateLimitException) {
+      return false;
+    }
+    if (failure instanceof XeroRateLimitException) {
+      return !((XeroRateLimitException) failure).isDaily();
+    }
+    if (failure instanceof XeroApiException) {
+      int code = ((XeroApiException) failure).getResponseCode();
+      return code == 502 || code == 503 || code == 504;
+    }
+    return false;
+  }
+
+  protected Long retryAfterMillis(RuntimeException failure) {
+    if (!(failure instanceof XeroApiException)) {
+      return null;
+    }
+    String retryAfter = ((XeroApiException) failure).getHeader(RETRY_AFTER_HEADER);
+    if (retryAfter == null) {
+      return null;
+    }
+    try {
+      return Math.max(0, Long.parseLong(retryAfter.trim())) * 1000;
+    } catch (NumberFormatException e) {
+      // HTTP dates aren't used by Xero
+      return null;
+    }
+  }
+
+}
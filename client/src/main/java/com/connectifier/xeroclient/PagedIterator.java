@@ -0,0 +1,126 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Iterates over every entity of a paged endpoint, fetching up to {@code prefetch} pages
+ * ahead in the background. The data is assumed to run out at the first page holding fewer
+ * than {@link #PAGE_SIZE} entities.
+ *
+ * Pages are addressed by a cursor, which is a page number or an offset. Pages ahead are
+ * requested at the predicted cursor and refetched if the actual cursor turns out to differ.
+ */
+public abstract class PagedIterator<T> extends AbstractIterator<T> {
+
+  public static final int PAGE_SIZE = 100;
+
+  private final ExecutorService executor;
+  private final int prefetch;
+  private final Deque<PendingPage<T>> pending = new ArrayDeque<>();
+  private long nextCursor;
+  private boolean exhausted;
+  private Iterator<T> current = Collections.emptyIterator();
+
+  protected PagedIterator(ExecutorService executor, long firstCursor, int prefetch) {
+    Preconditions.checkArgument(prefetch >= 0, "prefetch must not be negative");
+    this.executor = executor;
+    this.nextCursor = firstCursor;
+    this.prefetch = prefetch;
+  }
+
+  protected abstract List<T> fetch(long cursor);
+
+  /**
+   * The cursor of the page that follows the given full page.
+   */
+  protected abstract long nextCursor(long cursor, List<T> page);
+
+  /**
+   * The cursor of the page expected to follow the page at the given cursor, used to
+   * request pages before the page at the given cursor has arrived.
+   */
+  protected abstract long predictNextCursor(long cursor);
+
+  @Override
+  protected T computeNext() {
+    while (!current.hasNext()) {
+      if (exhausted) {
+        return endOfData();
+      }
+      fill();
+      PendingPage<T> head = pending.poll();
+      List<T> page = await(head.future);
+      if (page.size() < PAGE_SIZE) {
+        exhausted = true;
+        cancelPending();
+      } else {
+        long actual = nextCursor(head.cursor, page);
+        if (pending.isEmpty() ? actual != nextCursor : pending.peek().cursor != actual) {
+          cancelPending();
+          nextCursor = actual;
+        }
+      }
+      current = page.iterator();
+    }
+    return current.next();
+  }
+
+  private void fill() {
+    while (pending.size() <= prefetch) {
+      final long cursor = nextCursor;
+      Future<List<T>> future = executor.submit(new Callable<List<T>>() {
+        @Override
+        public List<T> call() {
+          return fetch(cursor);
+        }
+      });
+      pending.add(new PendingPage<>(cursor, future));
+      nextCursor = predictNextCursor(cursor);
+    }
+  }
+
+  private void cancelPending() {
+    for (PendingPage<T> page : pending) {
+      page.future.cancel(true);
+    }
+    pending.clear();
+  }
+
+  private List<T> await(Future<List<T>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      cancelPending();
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while fetching page", e);
+    } catch (ExecutionException e) {
+      cancelPending();
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private static class PendingPage<T> {
+    private final long cursor;
+    private final Future<List<T>> future;
+
+    private PendingPage(long cursor, Future<List<T>> future) {
+      this.cursor = cursor;
+      this.future = future;
+    }
+  }
+
+}
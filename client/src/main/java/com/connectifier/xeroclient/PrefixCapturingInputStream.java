@@ -0,0 +1,54 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Passes a stream through while remembering its first bytes, so that a response can be
+ * parsed without buffering it and still be quoted in error messages.
+ */
+class PrefixCapturingInputStream extends FilterInputStream {
+
+  private final byte[] prefix;
+  private int length;
+
+  PrefixCapturingInputStream(InputStream in, int maxPrefix) {
+    super(in);
+    this.prefix = new byte[maxPrefix];
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0 && length < prefix.length) {
+      prefix[length++] = (byte) b;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int read = super.read(b, off, len);
+    if (read > 0 && length < prefix.length) {
+      int captured = Math.min(read, prefix.length - length);
+      System.arraycopy(b, off, prefix, length, captured);
+      length += captured;
+    }
+    return read;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  String getPrefix() {
+    return new String(prefix, 0, length, Charsets.UTF_8);
+  }
+
+}
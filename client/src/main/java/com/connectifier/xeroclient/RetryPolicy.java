@@ -0,0 +1,25 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import org.scribe.model.OAuthRequest;
+
+/**
+ * Decides whether and when a failed request is sent again. Each attempt is signed afresh.
+ */
+public interface RetryPolicy {
+
+  /**
+   * @param request the request that failed
+   * @param attempt the number of attempts made so far, starting at 1
+   * @param failure the exception the attempt failed with
+   * @return how many milliseconds to wait before trying again, or a negative number to give up
+   */
+  long retryDelayMillis(OAuthRequest request, int attempt, RuntimeException failure);
+
+  /**
+   * Called after each successful request.
+   */
+  void onSuccess();
+
+}
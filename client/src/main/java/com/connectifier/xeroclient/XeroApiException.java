@@ -2,24 +2,50 @@
 
 package com.connectifier.xeroclient;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class XeroApiException extends RuntimeException {
 
   private static final long serialVersionUID = 1L;
 
   private final int responseCode;
+  private final Map<String, String> headers;
 
   public XeroApiException(int responseCode) {
+    this(responseCode, Collections.<String, String>emptyMap());
+  }
+
+  public XeroApiException(int responseCode, Map<String, String> headers) {
     super(responseCode + " response.");
     this.responseCode = responseCode;
+    this.headers = headers;
   }
 
   public XeroApiException(int responseCode, String message) {
+    this(responseCode, message, Collections.<String, String>emptyMap());
+  }
+
+  public XeroApiException(int responseCode, String message, Map<String, String> headers) {
     super(responseCode + " response: " + message);
     this.responseCode = responseCode;
+    this.headers = headers;
   }
   
   public int getResponseCode() {
     return responseCode;
   }
+
+  /**
+   * Returns the value of the given response header, ignoring case, or null.
+   */
+  public String getHeader(String name) {
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      if (name.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
   
 }
@@ -2,35 +2,55 @@
 
 package com.connectifier.xeroclient;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.Date;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 
 import org.scribe.builder.ServiceBuilder;
+import org.scribe.exceptions.OAuthConnectionException;
 import org.scribe.model.OAuthRequest;
-import org.scribe.model.Response;
 import org.scribe.model.Token;
 import org.scribe.model.Verb;
 import org.scribe.oauth.OAuthService;
 
+import com.connectifier.xeroclient.http.UrlConnectionTransport;
+import com.connectifier.xeroclient.http.XeroHttpResponse;
+import com.connectifier.xeroclient.http.XeroTransport;
+import com.connectifier.xeroclient.jaxb.DateAdapter;
+import com.connectifier.xeroclient.jaxb.JaxbBinder;
+import com.connectifier.xeroclient.jaxb.Projection;
+import com.connectifier.xeroclient.jaxb.StaxElementIterator;
+import com.connectifier.xeroclient.metrics.NoOpInstrumentation;
+import com.connectifier.xeroclient.metrics.XeroInstrumentation;
 import com.connectifier.xeroclient.models.Account;
 import com.connectifier.xeroclient.models.ApiException;
 import com.connectifier.xeroclient.models.ArrayOfInvoice;
@@ -58,31 +78,235 @@ import com.connectifier.xeroclient.models.TaxRate;
 import com.connectifier.xeroclient.models.TrackingCategory;
 import com.connectifier.xeroclient.models.User;
 import com.connectifier.xeroclient.oauth.XeroOAuthService;
-
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.base.Utf8;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Client for the Xero accounting API.
+ *
+ * A client is safe for concurrent use once configured, so a single instance can be shared by
+ * every thread working on its tenant. Configure it with the setters before sharing it.
+ */
 public class XeroClient {
 
   protected static final String BASE_URL = "https://api.xero.com/api.xro/2.0/";
-  protected static final DateFormat utcFormatter;
-  static {
-    utcFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-    utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-  }
   protected static final Pattern MESSAGE_PATTERN = Pattern.compile("<Message>(.*)</Message>");
+  protected static final String RATE_LIMIT_PROBLEM_HEADER = "X-Rate-Limit-Problem";
+  protected static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+  protected static final int MAX_ERROR_BODY_LENGTH = 2048;
+  protected static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("xero-client-%d").build());
+  protected static final int IDS_PER_REQUEST = 40;
+  private static final LoadingCache<String, Optional<Method>> ENTITY_GETTERS = CacheBuilder.newBuilder()
+      .build(new CacheLoader<String, Optional<Method>>() {
+        @Override
+        public Optional<Method> load(String endPoint) {
+          try {
+            Method getter = com.connectifier.xeroclient.models.Response.class.getMethod("get" + endPoint);
+            return List.class.isAssignableFrom(getter.getReturnType()) ? Optional.of(getter) : Optional.<Method>absent();
+          } catch (NoSuchMethodException e) {
+            return Optional.absent();
+          }
+        }
+      });
+
+  private static final LoadingCache<String, Optional<Projection<com.connectifier.xeroclient.models.Response>>> PROJECTIONS =
+      CacheBuilder.newBuilder().build(new CacheLoader<String, Optional<Projection<com.connectifier.xeroclient.models.Response>>>() {
+        @Override
+        public Optional<Projection<com.connectifier.xeroclient.models.Response>> load(String endPoint) {
+          return Optional.fromNullable(Projection.of(com.connectifier.xeroclient.models.Response.class, endPoint));
+        }
+      });
+  /** Invoices without the line items, payments and credit notes that make up most of their size. */
+  protected static final Projection<com.connectifier.xeroclient.models.Response> INVOICE_SUMMARIES =
+      Projection.of(com.connectifier.xeroclient.models.Response.class, "Invoices")
+          .excluding("LineItems", "Payments", "CreditNotes");
+
+  protected static final EntityType<BankTransaction> BANK_TRANSACTIONS = new EntityType<BankTransaction>("BankTransactions") {
+    @Override
+    List<BankTransaction> entities(com.connectifier.xeroclient.models.Response response) {
+      return response.getBankTransactions();
+    }
+
+    @Override
+    String id(BankTransaction bankTransaction) {
+      return bankTransaction.getBankTransactionID();
+    }
+
+    @Override
+    void wrap(com.connectifier.xeroclient.models.Response response, BankTransaction bankTransaction) {
+      response.setBankTransactions(Collections.singletonList(bankTransaction));
+    }
+
+    @Override
+    boolean isComplete(Map<String, String> params) {
+      // line items are only included in paged responses
+      return params != null && params.containsKey("page");
+    }
+  };
+
+  protected static final EntityType<Contact> CONTACTS = new EntityType<Contact>("Contacts") {
+    @Override
+    List<Contact> entities(com.connectifier.xeroclient.models.Response response) {
+      return response.getContacts();
+    }
+
+    @Override
+    String id(Contact contact) {
+      return contact.getContactID();
+    }
+
+    @Override
+    void wrap(com.connectifier.xeroclient.models.Response response, Contact contact) {
+      response.setContacts(Collections.singletonList(contact));
+    }
+  };
+
+  protected static final EntityType<Invoice> INVOICES = new EntityType<Invoice>("Invoices") {
+    @Override
+    List<Invoice> entities(com.connectifier.xeroclient.models.Response response) {
+      return response.getInvoices();
+    }
+
+    @Override
+    String id(Invoice invoice) {
+      return invoice.getInvoiceID();
+    }
+
+    @Override
+    void wrap(com.connectifier.xeroclient.models.Response response, Invoice invoice) {
+      response.setInvoices(Collections.singletonList(invoice));
+    }
+
+    @Override
+    boolean isComplete(Map<String, String> params) {
+      // line items are only included in paged responses
+      return params != null && params.containsKey("page");
+    }
+  };
+
+  protected static final EntityType<Item> ITEMS = new EntityType<Item>("Items") {
+    @Override
+    List<Item> entities(com.connectifier.xeroclient.models.Response response) {
+      return response.getItems();
+    }
+
+    @Override
+    String id(Item item) {
+      return item.getItemID();
+    }
+
+    @Override
+    void wrap(com.connectifier.xeroclient.models.Response response, Item item) {
+      response.setItems(Collections.singletonList(item));
+    }
+  };
 
   protected final OAuthService service;
   protected final Token token;
   protected final ObjectFactory objFactory = new ObjectFactory();
+  protected ExecutorService executor = DEFAULT_EXECUTOR;
+  protected XeroRateLimiter rateLimiter;
+  protected boolean blockOnRateLimit = true;
+  protected RetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy();
+  protected XeroTransport transport = new UrlConnectionTransport();
+  protected XeroInstrumentation instrumentation = NoOpInstrumentation.INSTANCE;
 
   public XeroClient(Reader pemReader, String consumerKey, String consumerSecret) {
+    this(pemReader, consumerKey, consumerSecret, false);
+  }
+
+  /**
+   * @param warmUp whether to build the JAXB context up front so that the first request isn't slow
+   */
+  public XeroClient(Reader pemReader, String consumerKey, String consumerSecret, boolean warmUp) {
     service = new ServiceBuilder()
         .provider(new XeroOAuthService(pemReader))
         .apiKey(consumerKey)
         .apiSecret(consumerSecret)
         .build();
     token = new Token(consumerKey, consumerSecret);
+    rateLimiter = XeroRateLimiter.forTenant(consumerKey);
+    if (warmUp) {
+      JaxbBinder.warmUp();
+    }
+  }
+
+  /**
+   * Sets the executor used for background work such as prefetching pages.
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Sets the limiter requests are drawn from, by default the one shared by every client for
+   * this consumer key. Pass null to disable client-side rate limiting.
+   */
+  public void setRateLimiter(XeroRateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Sets whether to wait for a rate limit permit or to fail fast with a
+   * {@link XeroRateLimitException} when none is available. Defaults to waiting.
+   */
+  public void setBlockOnRateLimit(boolean blockOnRateLimit) {
+    this.blockOnRateLimit = blockOnRateLimit;
+  }
+
+  /**
+   * Sets the policy for retrying transient failures. Pass null to disable retries.
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * Sets the transport requests are sent with once they've been signed.
+   */
+  public void setTransport(XeroTransport transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * Sets where timings, sizes and error counts of each request are reported.
+   */
+  public void setInstrumentation(XeroInstrumentation instrumentation) {
+    this.instrumentation = instrumentation;
   }
 
-  protected XeroApiException newApiException(Response response) {
+  protected void acquireRateLimitPermit() {
+    if (rateLimiter == null) {
+      return;
+    }
+    if (blockOnRateLimit) {
+      rateLimiter.acquire();
+    } else if (!rateLimiter.tryAcquire()) {
+      boolean daily = rateLimiter.isDailyLimitReached();
+      throw new XeroClientRateLimitException("Client-side " + (daily ? "daily" : "minute")
+          + " rate limit reached for " + rateLimiter.getTenant(), daily);
+    }
+  }
+
+  protected XeroApiException newApiException(XeroHttpResponse response) {
+    if (isRateLimitResponse(response)) {
+      boolean daily = "Daily".equalsIgnoreCase(response.getHeader(RATE_LIMIT_PROBLEM_HEADER));
+      if (rateLimiter != null) {
+        rateLimiter.onLimitExceeded(daily);
+      }
+      return new XeroRateLimitException("rate limit exceeded", daily, response.getHeaders());
+    }
     ApiException exception = null;
     try {
       exception = unmarshallResponse(response.getBody(), ApiException.class);
@@ -99,11 +323,12 @@ public class XeroClient {
     }
     if (exception == null) {
       if (messages.length() > 0) {
-        return new XeroApiException(response.getCode(), messages.toString());
+        return new XeroApiException(response.getCode(), messages.toString(), response.getHeaders());
       }
-      return new XeroApiException(response.getCode());
+      return new XeroApiException(response.getCode(), response.getHeaders());
     }
-    return new XeroApiException(response.getCode(), "Error number " + exception.getErrorNumber() + ". " + messages);
+    return new XeroApiException(response.getCode(), "Error number " + exception.getErrorNumber() + ". " + messages,
+        response.getHeaders());
   }
   
   protected com.connectifier.xeroclient.models.Response get(String endPoint) {
@@ -111,55 +336,307 @@ public class XeroClient {
   }
 
   protected com.connectifier.xeroclient.models.Response get(String endPoint, Date modifiedAfter, Map<String,String> params) {
+    XeroHttpResponse response = send(newGetRequestSupplier(endPoint, modifiedAfter, params));
+    return unmarshallResponse(endPoint, response);
+  }
+
+  /**
+   * Fetches the endpoint and unmarshals only what the projection selects. The result is not
+   * what a plain get would return, so this bypasses any caching done by subclasses.
+   */
+  protected com.connectifier.xeroclient.models.Response get(String endPoint, Date modifiedAfter, Map<String,String> params,
+      Projection<com.connectifier.xeroclient.models.Response> projection) {
+    XeroHttpResponse response = send(newGetRequestSupplier(endPoint, modifiedAfter, params));
+    return unmarshallResponse(endPoint, response, projection);
+  }
+
+  /**
+   * Unmarshals the collection named after the endpoint, e.g. the Invoices of Invoices/{id},
+   * skipping the rest of the response. Endpoints without a matching collection are
+   * unmarshalled in full.
+   */
+  protected com.connectifier.xeroclient.models.Response unmarshallResponse(String endPoint, XeroHttpResponse response) {
+    return unmarshallResponse(endPoint, response, PROJECTIONS.getUnchecked(metricName(endPoint)).orNull());
+  }
+
+  /**
+   * Unmarshals the body of a successful response, reporting its size, entity count and the
+   * time taken to the instrumentation.
+   */
+  protected com.connectifier.xeroclient.models.Response unmarshallResponse(String endPoint, XeroHttpResponse response,
+      Projection<com.connectifier.xeroclient.models.Response> projection) {
+    long start = System.nanoTime();
+    CountingInputStream stream = new CountingInputStream(response.getStream());
+    JaxbBinder binder = binder(com.connectifier.xeroclient.models.Response.class);
+    com.connectifier.xeroclient.models.Response result = projection == null
+        ? unmarshallResponse(stream, com.connectifier.xeroclient.models.Response.class, binder)
+        : unmarshallResponse(stream, projection, binder);
+    instrumentation.onUnmarshalled(tenant(), metricName(endPoint), System.nanoTime() - start, stream.getCount(),
+        countEntities(endPoint, result));
+    return result;
+  }
+
+  protected OAuthRequest newGetRequest(String endPoint, Date modifiedAfter, Map<String,String> params) {
     OAuthRequest request = new OAuthRequest(Verb.GET, BASE_URL + endPoint);
     if (modifiedAfter != null) {
-      request.addHeader("If-Modified-Since", utcFormatter.format(modifiedAfter));
+      request.addHeader("If-Modified-Since", formatUtc(modifiedAfter));
     }
     if (params != null) {
       for (Map.Entry<String,String> param : params.entrySet()) {
         request.addQuerystringParameter(param.getKey(), param.getValue());
       }
     }
-    service.signRequest(token, request);
-    Response response = request.send();
-    if (response.getCode() != 200) {
-      throw newApiException(response);
-    }
-    return unmarshallResponse(response.getBody(), com.connectifier.xeroclient.models.Response.class);
+    return request;
+  }
+
+  protected Supplier<OAuthRequest> newGetRequestSupplier(final String endPoint, final Date modifiedAfter,
+      final Map<String,String> params) {
+    return new Supplier<OAuthRequest>() {
+      @Override
+      public OAuthRequest get() {
+        return newGetRequest(endPoint, modifiedAfter, params);
+      }
+    };
   }
 
   protected com.connectifier.xeroclient.models.Response put(String endPoint, JAXBElement<?> object) {
-    OAuthRequest request = new OAuthRequest(Verb.PUT, BASE_URL + endPoint);
-    String contents = marshallRequest(object);
-    request.setCharset("UTF-8");
-    request.addBodyParameter("xml", contents);
-    service.signRequest(token, request);
-    Response response = request.send();
-    if (response.getCode() != 200) {
-      throw newApiException(response);
-    }
-    return unmarshallResponse(response.getBody(), com.connectifier.xeroclient.models.Response.class);
+    return put(endPoint, object, null);
+  }
+
+  protected com.connectifier.xeroclient.models.Response put(String endPoint, JAXBElement<?> object, Map<String,String> params) {
+    return write(Verb.PUT, endPoint, object, params);
+  }
+
+  protected com.connectifier.xeroclient.models.Response put(String endPoint, JAXBElement<?> object, Map<String,String> params,
+      String idempotencyKey) {
+    return write(Verb.PUT, endPoint, object, params, idempotencyKey);
   }
 
   protected com.connectifier.xeroclient.models.Response post(String endPoint, JAXBElement<?> object) {
-    OAuthRequest request = new OAuthRequest(Verb.POST, BASE_URL + endPoint);
-    String contents = marshallRequest(object);
-    request.setCharset("UTF-8");
-    request.addBodyParameter("xml", contents);
+    return post(endPoint, object, null);
+  }
+
+  protected com.connectifier.xeroclient.models.Response post(String endPoint, JAXBElement<?> object, Map<String,String> params) {
+    return write(Verb.POST, endPoint, object, params);
+  }
+
+  protected com.connectifier.xeroclient.models.Response post(String endPoint, JAXBElement<?> object, Map<String,String> params,
+      String idempotencyKey) {
+    return write(Verb.POST, endPoint, object, params, idempotencyKey);
+  }
+
+  /**
+   * Sends a write with an idempotency key that stays the same across retries, so that a
+   * replayed request can be recognized instead of creating duplicates.
+   */
+  protected com.connectifier.xeroclient.models.Response write(Verb verb, String endPoint, JAXBElement<?> object,
+      Map<String,String> params) {
+    return write(verb, endPoint, object, params, UUID.randomUUID().toString());
+  }
+
+  /**
+   * Sends a write with the given idempotency key, which callers reuse when they send the same
+   * write again after it failed.
+   */
+  protected com.connectifier.xeroclient.models.Response write(final Verb verb, final String endPoint, JAXBElement<?> object,
+      final Map<String,String> params, final String idempotencyKey) {
+    final String contents = marshallRequest(object);
+    XeroHttpResponse response = send(new Supplier<OAuthRequest>() {
+      @Override
+      public OAuthRequest get() {
+        OAuthRequest request = new OAuthRequest(verb, BASE_URL + endPoint);
+        request.setCharset("UTF-8");
+        request.addHeader(IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        if (params != null) {
+          for (Map.Entry<String,String> param : params.entrySet()) {
+            request.addQuerystringParameter(param.getKey(), param.getValue());
+          }
+        }
+        request.addBodyParameter("xml", contents);
+        return request;
+      }
+    }, Utf8.encodedLength(contents));
+    return unmarshallResponse(endPoint, response);
+  }
+
+  protected boolean isRateLimitResponse(XeroHttpResponse response) {
+    if (response.getCode() != XeroRateLimitException.RESPONSE_CODE) {
+      return false;
+    }
+    if (response.getHeader(RATE_LIMIT_PROBLEM_HEADER) != null) {
+      return true;
+    }
+    String body = response.getBody();
+    return body.contains("rate limit exceeded") || body.contains("rate%20limit%20exceeded");
+  }
+
+  protected XeroHttpResponse send(Supplier<OAuthRequest> requestSupplier) {
+    return send(requestSupplier, 0);
+  }
+
+  /**
+   * Sends a fresh request from the supplier for each attempt, retrying according to the
+   * retry policy. bodyBytes is the size of the marshalled body, measured once by the caller
+   * and reported to the instrumentation.
+   */
+  protected XeroHttpResponse send(Supplier<OAuthRequest> requestSupplier, long bodyBytes) {
+    for (int attempt = 1; ; attempt++) {
+      OAuthRequest request = requestSupplier.get();
+      try {
+        XeroHttpResponse response = send(request, bodyBytes);
+        if (retryPolicy != null) {
+          retryPolicy.onSuccess();
+        }
+        return response;
+      } catch (RuntimeException e) {
+        long delay = retryPolicy == null ? -1 : retryPolicy.retryDelayMillis(request, attempt, e);
+        if (delay < 0) {
+          throw e;
+        }
+        instrumentation.onRetry(tenant(), metricName(request), attempt, e);
+        try {
+          TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  protected XeroHttpResponse send(OAuthRequest request) {
+    return send(request, 0);
+  }
+
+  /**
+   * Signs and sends the request, throwing a {@link XeroApiException} for anything but a 200.
+   */
+  protected XeroHttpResponse send(OAuthRequest request, long bodyBytes) {
+    String endPoint = metricName(request);
+    try {
+      acquireRateLimitPermit();
+    } catch (XeroRateLimitException e) {
+      instrumentation.onRateLimited(tenant(), endPoint, e.isDaily(), true);
+      throw e;
+    }
+    long start = System.nanoTime();
     service.signRequest(token, request);
-    Response response = request.send();
+    long signed = System.nanoTime();
+    instrumentation.onSigned(tenant(), endPoint, signed - start);
+    XeroHttpResponse response;
+    try {
+      response = transport.send(request);
+    } catch (IOException e) {
+      throw new OAuthConnectionException(e);
+    }
+    instrumentation.onResponse(tenant(), endPoint, response.getCode(), System.nanoTime() - signed, bodyBytes);
     if (response.getCode() != 200) {
-      throw newApiException(response);
+      try {
+        XeroApiException exception = newApiException(response);
+        if (exception instanceof XeroRateLimitException) {
+          instrumentation.onRateLimited(tenant(), endPoint, ((XeroRateLimitException) exception).isDaily(), false);
+        }
+        instrumentation.onApiException(tenant(), endPoint, exception);
+        throw exception;
+      } finally {
+        closeQuietly(response);
+      }
+    }
+    return response;
+  }
+
+  protected String tenant() {
+    return token.getToken();
+  }
+
+  /**
+   * The endpoint a request is reported under: the first segment of its path, so that requests
+   * for single entities are counted with their endpoint.
+   */
+  protected static String metricName(String endPoint) {
+    int slash = endPoint.indexOf('/');
+    return slash < 0 ? endPoint : endPoint.substring(0, slash);
+  }
+
+  protected static String metricName(OAuthRequest request) {
+    String url = request.getUrl();
+    return metricName(url.startsWith(BASE_URL) ? url.substring(BASE_URL.length()) : url);
+  }
+
+  /**
+   * Counts the entities in a response by calling the getter named after the endpoint, e.g.
+   * getInvoices() for Invoices, or returns -1 if there is no such getter.
+   */
+  protected static int countEntities(String endPoint, com.connectifier.xeroclient.models.Response response) {
+    Optional<Method> getter = ENTITY_GETTERS.getUnchecked(metricName(endPoint));
+    if (!getter.isPresent()) {
+      return -1;
+    }
+    try {
+      return ((List<?>) getter.get().invoke(response)).size();
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Walks the response with StAX and unmarshals one element at a time, handing each to the
+   * handler as soon as it has been read, so only a single entity is held in memory.
+   *
+   * @return the number of entities handled
+   */
+  protected <T> int stream(String endPoint, Date modifiedAfter, Map<String,String> params,
+      String elementName, Class<T> clazz, EntityHandler<? super T> handler) {
+    XeroHttpResponse response = send(newGetRequestSupplier(endPoint, modifiedAfter, params));
+    CountingInputStream stream = new CountingInputStream(response.getStream());
+    // the iterator closes the response once created, until then it has to be closed here
+    StaxElementIterator<T> created;
+    try {
+      created = new StaxElementIterator<>(stream, elementName, clazz, binder(clazz));
+    } catch (XMLStreamException e) {
+      closeQuietly(response);
+      throw new IllegalStateException("Error unmarshalling " + elementName + " from " + endPoint, e);
+    } catch (RuntimeException e) {
+      closeQuietly(response);
+      throw e;
+    }
+    try (StaxElementIterator<T> iter = created) {
+      int count = 0;
+      // only time spent parsing is reported, not time spent in the handler
+      long parseNanos = 0;
+      while (true) {
+        long start = System.nanoTime();
+        T entity = iter.hasNext() ? iter.next() : null;
+        parseNanos += System.nanoTime() - start;
+        if (entity == null) {
+          break;
+        }
+        handler.handle(entity);
+        count++;
+      }
+      instrumentation.onUnmarshalled(tenant(), metricName(endPoint), parseNanos, stream.getCount(), count);
+      return count;
+    } catch (IOException e) {
+      throw new IllegalStateException("Error reading response", e);
+    }
+  }
+
+  /**
+   * The binder requests and responses are bound with. Override to bind differently, e.g. with
+   * {@link JaxbBinder#withoutCodecs()}.
+   */
+  protected JaxbBinder binder(Class<?> clazz) {
+    try {
+      return JaxbBinder.of(clazz);
+    } catch (JAXBException e) {
+      throw new IllegalStateException("Error building JAXB context for " + clazz, e);
     }
-    return unmarshallResponse(response.getBody(), com.connectifier.xeroclient.models.Response.class);
   }
 
   protected <T> String marshallRequest(JAXBElement<?> object) {
     try {
-      JAXBContext context = JAXBContext.newInstance(object.getValue().getClass());
-      Marshaller marshaller = context.createMarshaller();
       StringWriter writer = new StringWriter();
-      marshaller.marshal(object, writer);
+      binder(object.getValue().getClass()).marshal(object, writer);
       return writer.toString();
     } catch (JAXBException e) {
       throw new IllegalStateException("Error marshalling request object " + object.getClass(), e);
@@ -168,21 +645,136 @@ public class XeroClient {
 
   protected static <T> T unmarshallResponse(String responseBody, Class<T> clazz) {
     try {
-      JAXBContext context = JAXBContext.newInstance(clazz);
-      Unmarshaller unmarshaller = context.createUnmarshaller();
-      Source source = new StreamSource(new ByteArrayInputStream(responseBody.getBytes()));
-      return unmarshaller.unmarshal(source, clazz).getValue();
+      Source source = new StreamSource(new StringReader(responseBody));
+      return JaxbBinder.of(clazz).unmarshal(source, clazz);
     } catch (JAXBException e) {
-      throw new IllegalStateException("Error unmarshalling response: " + responseBody, e);
+      throw new IllegalStateException("Error unmarshalling response: " + abbreviate(responseBody), e);
+    }
+  }
+
+  /**
+   * Parses the response as it is read off the connection. The XML parser decodes it as UTF-8
+   * unless the document declares otherwise. Only a bounded prefix is kept for error messages.
+   */
+  protected static <T> T unmarshallResponse(InputStream responseStream, Class<T> clazz) {
+    try {
+      return unmarshallResponse(responseStream, clazz, JaxbBinder.of(clazz));
+    } catch (JAXBException e) {
+      throw new IllegalStateException("Error building JAXB context for " + clazz, e);
+    }
+  }
+
+  protected static <T> T unmarshallResponse(InputStream responseStream, Class<T> clazz, JaxbBinder binder) {
+    try (PrefixCapturingInputStream stream = new PrefixCapturingInputStream(responseStream, MAX_ERROR_BODY_LENGTH)) {
+      try {
+        return binder.unmarshal(new StreamSource(stream), clazz);
+      } catch (JAXBException e) {
+        throw new IllegalStateException("Error unmarshalling response: " + stream.getPrefix(), e);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Error reading response", e);
+    }
+  }
+
+  protected static <T> T unmarshallResponse(InputStream responseStream, Projection<T> projection,
+      JaxbBinder binder) {
+    try (PrefixCapturingInputStream stream = new PrefixCapturingInputStream(responseStream, MAX_ERROR_BODY_LENGTH)) {
+      try {
+        return projection.unmarshal(stream, binder);
+      } catch (JAXBException | XMLStreamException e) {
+        throw new IllegalStateException("Error unmarshalling response: " + stream.getPrefix(), e);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Error reading response", e);
     }
   }
 
+  protected static void closeQuietly(XeroHttpResponse response) {
+    try {
+      response.close();
+    } catch (IOException e) {
+      // The error being reported matters more
+    }
+  }
+
+  protected static String abbreviate(String responseBody) {
+    if (responseBody.length() <= MAX_ERROR_BODY_LENGTH) {
+      return responseBody;
+    }
+    return responseBody.substring(0, MAX_ERROR_BODY_LENGTH) + "...";
+  }
+
+  protected static String formatUtc(Date date) {
+    return DateAdapter.printUtcDateTime(date);
+  }
+
   protected void addToMapIfNotNull(Map<String,String> map, String key, Object value) {
     if (value != null) {
       map.put(key, value.toString());
     }
   }
   
+  /**
+   * The journal's number, which is also the offset to fetch the journals after it from.
+   */
+  public static long journalNumber(Journal journal) {
+    return journal.getJournalNumber().longValue();
+  }
+
+  /**
+   * With summarizeErrors=false, Xero validates each element separately and reports failures on
+   * the returned elements instead of rejecting the whole request.
+   */
+  protected Map<String, String> summarizeErrorsParams(boolean summarizeErrors) {
+    Map<String, String> params = new HashMap<>();
+    if (!summarizeErrors) {
+      params.put("summarizeErrors", "false");
+    }
+    return params;
+  }
+
+  /**
+   * Fetches the entities with the given IDs through the endpoint's IDs filter, in chunks of
+   * {@link #IDS_PER_REQUEST} that keep the URL short, sent in parallel on the executor. The
+   * page parameter makes Xero return complete entities. IDs that don't exist are left out.
+   */
+  protected <T> Map<String, T> getByIds(final EntityType<T> type, Collection<String> ids) {
+    List<Future<List<T>>> chunks = new ArrayList<>();
+    for (final List<String> chunk : Iterables.partition(ImmutableSet.copyOf(ids), IDS_PER_REQUEST)) {
+      chunks.add(executor.submit(new Callable<List<T>>() {
+        @Override
+        public List<T> call() {
+          Map<String, String> params = new HashMap<>();
+          params.put("IDs", Joiner.on(',').join(chunk));
+          params.put("page", "1");
+          return type.entities(get(type.endPoint, null, params));
+        }
+      }));
+    }
+    Map<String, T> results = new LinkedHashMap<>();
+    try {
+      for (Future<List<T>> chunk : chunks) {
+        for (T entity : chunk.get()) {
+          results.put(type.id(entity), entity);
+        }
+      }
+    } catch (InterruptedException e) {
+      cancel(chunks);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while fetching " + type.endPoint, e);
+    } catch (ExecutionException e) {
+      cancel(chunks);
+      throw Throwables.propagate(e.getCause());
+    }
+    return results;
+  }
+
+  private static void cancel(List<? extends Future<?>> futures) {
+    for (Future<?> future : futures) {
+      future.cancel(true);
+    }
+  }
+
   protected <T> T singleResult(List<T> list) {
     if (list.isEmpty()) {
       return null;
@@ -223,10 +815,31 @@ public class XeroClient {
     return get("BankTransactions", modifiedAfter, params).getBankTransactions();
   }
 
+  public int streamBankTransactions(Date modifiedAfter, String where, String order, EntityHandler<? super BankTransaction> handler) {
+    Map<String, String> params = new HashMap<>();
+    addToMapIfNotNull(params, "Where", where);
+    addToMapIfNotNull(params, "order", order);
+    return stream("BankTransactions", modifiedAfter, params, "BankTransaction", BankTransaction.class, handler);
+  }
+
   public List<BankTransaction> createBankTransactions(List<BankTransaction> bankTransactions) {
+    return createBankTransactions(bankTransactions, true);
+  }
+
+  public List<BankTransaction> createBankTransactions(List<BankTransaction> bankTransactions, boolean summarizeErrors) {
+    return createBankTransactions(bankTransactions, summarizeErrors, UUID.randomUUID().toString());
+  }
+
+  public List<BankTransaction> createBankTransactions(List<BankTransaction> bankTransactions, boolean summarizeErrors,
+      String idempotencyKey) {
+    return put("BankTransactions", wrapBankTransactions(bankTransactions), summarizeErrorsParams(summarizeErrors),
+        idempotencyKey).getBankTransactions();
+  }
+
+  protected JAXBElement<ArrayOfBankTransaction> wrapBankTransactions(List<BankTransaction> bankTransactions) {
     ArrayOfBankTransaction array = new ArrayOfBankTransaction();
     array.getBankTransaction().addAll(bankTransactions);
-    return put("BankTransactions", objFactory.createBankTransactions(array)).getBankTransactions();
+    return objFactory.createBankTransactions(array);
   }
 
   public List<BankTransaction> createBankTransaction(BankTransaction bankTransaction) {
@@ -246,7 +859,7 @@ public class XeroClient {
     addToMapIfNotNull(params, "Name", name);
     addToMapIfNotNull(params, "sortOrder", sortOrder);
     if (createdDateUTC != null) {
-      params.put("CreatedDateUTC", utcFormatter.format(createdDateUTC));
+      params.put("CreatedDateUTC", formatUtc(createdDateUTC));
     }
     return get("BankTransactions", null, params).getBankTransactions();
   }
@@ -259,6 +872,13 @@ public class XeroClient {
     return get("Contacts").getContacts();
   }
 
+  /**
+   * Returns the contacts with the given IDs, keyed by ID.
+   */
+  public Map<String, Contact> getContacts(Collection<String> ids) {
+    return getByIds(CONTACTS, ids);
+  }
+
   public List<Contact> getContacts(Date modifiedAfter, String where, String order, Integer page, Boolean includedArchive) {
     Map<String, String> params = new HashMap<>();
     addToMapIfNotNull(params, "Where", where);
@@ -268,6 +888,38 @@ public class XeroClient {
     return get("Contacts", modifiedAfter, params).getContacts();
   }
 
+  /**
+   * Iterates over every contact, fetching up to {@code prefetch} pages ahead in the background.
+   */
+  public Iterator<Contact> iterateContacts(final Date modifiedAfter, final String where, final String order,
+      final Boolean includedArchive, int prefetch) {
+    return new PagedIterator<Contact>(executor, 1, prefetch) {
+      @Override
+      protected List<Contact> fetch(long page) {
+        return getContacts(modifiedAfter, where, order, (int) page, includedArchive);
+      }
+
+      @Override
+      protected long nextCursor(long page, List<Contact> contacts) {
+        return page + 1;
+      }
+
+      @Override
+      protected long predictNextCursor(long page) {
+        return page + 1;
+      }
+    };
+  }
+
+  public int streamContacts(Date modifiedAfter, String where, String order, Integer page, Boolean includedArchive, EntityHandler<? super Contact> handler) {
+    Map<String, String> params = new HashMap<>();
+    addToMapIfNotNull(params, "Where", where);
+    addToMapIfNotNull(params, "order", order);
+    addToMapIfNotNull(params, "page", page);
+    addToMapIfNotNull(params, "includeArchived", includedArchive);
+    return stream("Contacts", modifiedAfter, params, "Contact", Contact.class, handler);
+  }
+
   public CreditNote getCreditNote(String id) {
     return singleResult(get("CreditNotes/" + id).getCreditNotes());
   }
@@ -325,6 +977,13 @@ public class XeroClient {
     return get("Invoices").getInvoices();
   }
 
+  /**
+   * Returns the invoices with the given IDs, keyed by ID.
+   */
+  public Map<String, Invoice> getInvoices(Collection<String> ids) {
+    return getByIds(INVOICES, ids);
+  }
+
   public List<Invoice> getInvoices(Date modifiedAfter, String where, String order, Integer page) {
     Map<String, String> params = new HashMap<>();
     addToMapIfNotNull(params, "Where", where);
@@ -333,6 +992,48 @@ public class XeroClient {
     return get("Invoices", modifiedAfter, params).getInvoices();
   }
 
+  /**
+   * Returns invoices without their line items, payments and credit notes, which are skipped
+   * while parsing. Use this when listing many invoices for their totals and statuses.
+   */
+  public List<Invoice> getInvoiceSummaries(Date modifiedAfter, String where, String order, Integer page) {
+    Map<String, String> params = new HashMap<>();
+    addToMapIfNotNull(params, "Where", where);
+    addToMapIfNotNull(params, "order", order);
+    addToMapIfNotNull(params, "page", page);
+    return get("Invoices", modifiedAfter, params, INVOICE_SUMMARIES).getInvoices();
+  }
+
+  /**
+   * Iterates over every invoice, fetching up to {@code prefetch} pages ahead in the background.
+   */
+  public Iterator<Invoice> iterateInvoices(final Date modifiedAfter, final String where, final String order, int prefetch) {
+    return new PagedIterator<Invoice>(executor, 1, prefetch) {
+      @Override
+      protected List<Invoice> fetch(long page) {
+        return getInvoices(modifiedAfter, where, order, (int) page);
+      }
+
+      @Override
+      protected long nextCursor(long page, List<Invoice> invoices) {
+        return page + 1;
+      }
+
+      @Override
+      protected long predictNextCursor(long page) {
+        return page + 1;
+      }
+    };
+  }
+
+  public int streamInvoices(Date modifiedAfter, String where, String order, Integer page, EntityHandler<? super Invoice> handler) {
+    Map<String, String> params = new HashMap<>();
+    addToMapIfNotNull(params, "Where", where);
+    addToMapIfNotNull(params, "order", order);
+    addToMapIfNotNull(params, "page", page);
+    return stream("Invoices", modifiedAfter, params, "Invoice", Invoice.class, handler);
+  }
+
   public List<Invoice> createInvoice(Invoice invoice) {
     return put("Invoices", objFactory.createInvoice(invoice)).getInvoices();
   }
@@ -342,9 +1043,22 @@ public class XeroClient {
   }
 
   public List<Receipt> createReceipts(List<Receipt> receipts) {
+    return createReceipts(receipts, true);
+  }
+
+  public List<Receipt> createReceipts(List<Receipt> receipts, boolean summarizeErrors) {
+    return createReceipts(receipts, summarizeErrors, UUID.randomUUID().toString());
+  }
+
+  public List<Receipt> createReceipts(List<Receipt> receipts, boolean summarizeErrors, String idempotencyKey) {
+    return put("Receipts", wrapReceipts(receipts), summarizeErrorsParams(summarizeErrors), idempotencyKey)
+        .getReceipts();
+  }
+
+  protected JAXBElement<ArrayOfReceipt> wrapReceipts(List<Receipt> receipts) {
     ArrayOfReceipt array = new ArrayOfReceipt();
     array.getReceipt().addAll(receipts);
-    return put("Receipts", objFactory.createReceipts(array)).getReceipts();
+    return objFactory.createReceipts(array);
   }
 
   public List<Receipt> createReceipt(Receipt receipt) {
@@ -352,15 +1066,35 @@ public class XeroClient {
   }
 
   public List<Invoice> createInvoices(List<Invoice> invoices) {
+    return createInvoices(invoices, true);
+  }
+
+  public List<Invoice> createInvoices(List<Invoice> invoices, boolean summarizeErrors) {
+    return createInvoices(invoices, summarizeErrors, UUID.randomUUID().toString());
+  }
+
+  public List<Invoice> createInvoices(List<Invoice> invoices, boolean summarizeErrors, String idempotencyKey) {
+    return put("Invoices", wrapInvoices(invoices), summarizeErrorsParams(summarizeErrors), idempotencyKey)
+        .getInvoices();
+  }
+
+  protected JAXBElement<ArrayOfInvoice> wrapInvoices(List<Invoice> invoices) {
     ArrayOfInvoice array = new ArrayOfInvoice();
     array.getInvoice().addAll(invoices);
-    return put("Invoices", objFactory.createInvoices(array)).getInvoices();
+    return objFactory.createInvoices(array);
   }
 
   public List<Invoice> updateInvoices(List<Invoice> invoices) {
-    ArrayOfInvoice array = new ArrayOfInvoice();
-    array.getInvoice().addAll(invoices);
-    return post("Invoices", objFactory.createInvoices(array)).getInvoices();
+    return updateInvoices(invoices, true);
+  }
+
+  public List<Invoice> updateInvoices(List<Invoice> invoices, boolean summarizeErrors) {
+    return updateInvoices(invoices, summarizeErrors, UUID.randomUUID().toString());
+  }
+
+  public List<Invoice> updateInvoices(List<Invoice> invoices, boolean summarizeErrors, String idempotencyKey) {
+    return post("Invoices", wrapInvoices(invoices), summarizeErrorsParams(summarizeErrors), idempotencyKey)
+        .getInvoices();
   }
 
   public Item getItem(String id) {
@@ -394,6 +1128,39 @@ public class XeroClient {
     return get("Journals", modifiedAfter, params).getJournals();
   }
 
+  /**
+   * Iterates over every journal after the given offset. Journal numbers are sequential, so
+   * up to {@code prefetch} offsets ahead are requested in the background and refetched if a
+   * page ends on an unexpected journal number.
+   */
+  public Iterator<Journal> iterateJournals(final Date modifiedAfter, Integer offset, final String where,
+      final String order, int prefetch) {
+    return new PagedIterator<Journal>(executor, offset == null ? 0 : offset, prefetch) {
+      @Override
+      protected List<Journal> fetch(long offset) {
+        return getJournals(modifiedAfter, (int) offset, where, order);
+      }
+
+      @Override
+      protected long nextCursor(long offset, List<Journal> journals) {
+        return journalNumber(journals.get(journals.size() - 1));
+      }
+
+      @Override
+      protected long predictNextCursor(long offset) {
+        return offset + PAGE_SIZE;
+      }
+    };
+  }
+
+  public int streamJournals(Date modifiedAfter, Integer offset, String where, String order, EntityHandler<? super Journal> handler) {
+    Map<String, String> params = new HashMap<>();
+    addToMapIfNotNull(params, "offset", offset);
+    addToMapIfNotNull(params, "Where", where);
+    addToMapIfNotNull(params, "order", order);
+    return stream("Journals", modifiedAfter, params, "Journal", Journal.class, handler);
+  }
+
   public ManualJournal getManualJournal(String id) {
     return singleResult(get("ManualJournals/" + id).getManualJournals());
   }
@@ -410,9 +1177,23 @@ public class XeroClient {
   }
 
   public List<ManualJournal> createManualJournals(List<ManualJournal> manualJournals) {
+    return createManualJournals(manualJournals, true);
+  }
+
+  public List<ManualJournal> createManualJournals(List<ManualJournal> manualJournals, boolean summarizeErrors) {
+    return createManualJournals(manualJournals, summarizeErrors, UUID.randomUUID().toString());
+  }
+
+  public List<ManualJournal> createManualJournals(List<ManualJournal> manualJournals, boolean summarizeErrors,
+      String idempotencyKey) {
+    return put("ManualJournals", wrapManualJournals(manualJournals), summarizeErrorsParams(summarizeErrors),
+        idempotencyKey).getManualJournals();
+  }
+
+  protected JAXBElement<ArrayOfManualJournal> wrapManualJournals(List<ManualJournal> manualJournals) {
     ArrayOfManualJournal array = new ArrayOfManualJournal();
     array.getManualJournal().addAll(manualJournals);
-    return put("ManualJournals", objFactory.createManualjournals(array)).getManualJournals();
+    return objFactory.createManualjournals(array);
   }
 
   public Organisation getOrganisation() {
@@ -494,4 +1275,28 @@ public class XeroClient {
     return get("Users", modifiedAfter, params).getUsers();
   }
 
+  /**
+   * How to pull entities of one type out of a response and wrap a single one back up.
+   */
+  protected abstract static class EntityType<T> {
+    final String endPoint;
+
+    EntityType(String endPoint) {
+      this.endPoint = endPoint;
+    }
+
+    abstract List<T> entities(com.connectifier.xeroclient.models.Response response);
+
+    abstract String id(T entity);
+
+    abstract void wrap(com.connectifier.xeroclient.models.Response response, T entity);
+
+    /**
+     * Whether a list fetch with the given parameters returns entities as complete as a fetch by ID.
+     */
+    boolean isComplete(Map<String, String> params) {
+      return true;
+    }
+  }
+
 }
@@ -0,0 +1,336 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.connectifier.xeroclient.http.UrlConnectionTransport;
+import com.connectifier.xeroclient.http.XeroTransport;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs requests for many tenants on a fixed set of worker threads over one shared transport.
+ *
+ * Each tenant has its own queue and its own client, created on first use by the factory.
+ * Workers serve tenants with queued work in weighted round-robin order: a tenant gets up to
+ * its weight in consecutive requests per round and has at most that many in flight, so a
+ * tenant with a deep queue can't starve the others. Clients of tenants with nothing queued
+ * for longer than the idle timeout are dropped and recreated when needed.
+ *
+ * A tenant whose rate limiter has no permit available is set aside until it has one, rather
+ * than parking a worker that other tenants could use. A request that makes several calls
+ * can still wait on the limiter part way through.
+ */
+public class XeroClientPool implements Closeable {
+
+  public static final int DEFAULT_WORKERS = 20;
+  public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  protected final Function<String, ? extends XeroClient> clientFactory;
+  protected final XeroTransport transport;
+  protected final long idleTimeoutNanos;
+  private final Ticker ticker;
+  private final Object lock = new Object();
+  private final Map<String, Tenant> tenants = new HashMap<>();
+  private final Map<String, Integer> weights = new HashMap<>();
+  /** Tenants with queued requests, in service order. */
+  private final Deque<Tenant> ready = new ArrayDeque<>();
+  /** Tenants with queued requests that are waiting for a rate limit permit. */
+  private final List<Tenant> limited = new ArrayList<>();
+  private final List<Thread> workers = new ArrayList<>();
+  private boolean closed;
+
+  public XeroClientPool(Function<String, ? extends XeroClient> clientFactory) {
+    this(clientFactory, new UrlConnectionTransport(), DEFAULT_WORKERS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * @param workers the number of requests in flight across all tenants
+   */
+  public XeroClientPool(Function<String, ? extends XeroClient> clientFactory, XeroTransport transport,
+      int workers, long idleTimeoutMillis) {
+    this(clientFactory, transport, workers, idleTimeoutMillis, Ticker.systemTicker());
+  }
+
+  protected XeroClientPool(Function<String, ? extends XeroClient> clientFactory, XeroTransport transport,
+      int workers, long idleTimeoutMillis, Ticker ticker) {
+    Preconditions.checkArgument(workers > 0, "workers must be positive");
+    this.clientFactory = clientFactory;
+    this.transport = transport;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    this.ticker = ticker;
+    ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("xero-client-pool-%d").build();
+    for (int i = 0; i < workers; i++) {
+      Thread worker = threadFactory.newThread(new Runnable() {
+        @Override
+        public void run() {
+          work();
+        }
+      });
+      this.workers.add(worker);
+      worker.start();
+    }
+  }
+
+  /**
+   * Sets how many requests the tenant gets per round and may have in flight. Defaults to 1.
+   */
+  public void setWeight(String tenant, int weight) {
+    Preconditions.checkArgument(weight > 0, "weight must be positive");
+    synchronized (lock) {
+      weights.put(tenant, weight);
+      Tenant existing = tenants.get(tenant);
+      if (existing != null) {
+        existing.weight = weight;
+      }
+    }
+  }
+
+  /**
+   * Queues a request for the tenant. The function is called with the tenant's client on a
+   * worker thread and its result completes the returned future.
+   */
+  public <T> ListenableFuture<T> submit(String tenant, Function<? super XeroClient, T> request) {
+    Task<T> task = new Task<>(request);
+    synchronized (lock) {
+      if (closed) {
+        throw new IllegalStateException("Pool is closed");
+      }
+      Tenant queue = tenant(tenant);
+      queue.tasks.add(task);
+      queue.lastUsed = ticker.read();
+      if (!queue.ready && !queue.limited && queue.running < queue.weight) {
+        queue.ready = true;
+        ready.add(queue);
+        lock.notify();
+      }
+    }
+    return task.future;
+  }
+
+  /**
+   * The number of queued requests per tenant, not counting those being sent.
+   */
+  public Map<String, Integer> getQueueDepths() {
+    Map<String, Integer> depths = new HashMap<>();
+    synchronized (lock) {
+      for (Tenant tenant : tenants.values()) {
+        depths.put(tenant.name, tenant.tasks.size());
+      }
+    }
+    return depths;
+  }
+
+  public int getQueueDepth(String tenant) {
+    synchronized (lock) {
+      Tenant queue = tenants.get(tenant);
+      return queue == null ? 0 : queue.tasks.size();
+    }
+  }
+
+  /**
+   * Drops the clients of tenants that have been idle for longer than the idle timeout.
+   * Called by the workers whenever they run out of work, and may be called on a schedule.
+   */
+  public void evictIdle() {
+    long now = ticker.read();
+    synchronized (lock) {
+      for (Iterator<Tenant> iter = tenants.values().iterator(); iter.hasNext(); ) {
+        Tenant tenant = iter.next();
+        if (tenant.tasks.isEmpty() && tenant.running == 0 && now - tenant.lastUsed > idleTimeoutNanos) {
+          iter.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops the workers once the queued requests have been sent.
+   */
+  @Override
+  public void close() {
+    synchronized (lock) {
+      closed = true;
+      lock.notifyAll();
+    }
+  }
+
+  private Tenant tenant(String name) {
+    Tenant tenant = tenants.get(name);
+    if (tenant == null) {
+      Integer weight = weights.get(name);
+      tenant = new Tenant(name, weight == null ? 1 : weight);
+      tenants.put(name, tenant);
+    }
+    return tenant;
+  }
+
+  private void work() {
+    while (true) {
+      Tenant tenant;
+      Task<?> task;
+      synchronized (lock) {
+        while (true) {
+          long limitedNanos = releaseLimited();
+          if (!ready.isEmpty()) {
+            break;
+          }
+          if (closed && limited.isEmpty()) {
+            return;
+          }
+          long waitNanos = limited.isEmpty() ? idleTimeoutNanos : Math.min(idleTimeoutNanos, limitedNanos);
+          try {
+            lock.wait(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+          } catch (InterruptedException e) {
+            return;
+          }
+          if (ready.isEmpty()) {
+            evictIdle();
+          }
+        }
+        tenant = ready.poll();
+        if (nanosUntilPermit(tenant) > 0) {
+          tenant.ready = false;
+          tenant.limited = true;
+          limited.add(tenant);
+          continue;
+        }
+        task = tenant.tasks.poll();
+        tenant.running++;
+        tenant.ready = false;
+        if (!tenant.tasks.isEmpty() && tenant.running < tenant.weight) {
+          requeue(tenant);
+        }
+      }
+      try {
+        task.run(client(tenant));
+      } catch (RuntimeException e) {
+        task.failure = e;
+      }
+      synchronized (lock) {
+        tenant.running--;
+        tenant.lastUsed = ticker.read();
+        if (!tenant.ready && !tenant.limited && !tenant.tasks.isEmpty()) {
+          requeue(tenant);
+        }
+      }
+      // completed only once the tenant is idle again, so that callers see it as such
+      task.complete();
+    }
+  }
+
+  /**
+   * Puts a tenant with queued work back in line, at the front while it has turns left this round.
+   */
+  private void requeue(Tenant tenant) {
+    tenant.ready = true;
+    if (++tenant.served < tenant.weight) {
+      ready.addFirst(tenant);
+    } else {
+      tenant.served = 0;
+      ready.addLast(tenant);
+    }
+    lock.notify();
+  }
+
+  /**
+   * Puts the limited tenants that have a permit again back in line, and returns how long
+   * until the next of the others has one.
+   */
+  private long releaseLimited() {
+    long next = Long.MAX_VALUE;
+    for (Iterator<Tenant> iter = limited.iterator(); iter.hasNext(); ) {
+      Tenant tenant = iter.next();
+      long nanos = nanosUntilPermit(tenant);
+      if (nanos == 0) {
+        iter.remove();
+        tenant.limited = false;
+        tenant.ready = true;
+        ready.add(tenant);
+      } else {
+        next = Math.min(next, nanos);
+      }
+    }
+    return next;
+  }
+
+  private static long nanosUntilPermit(Tenant tenant) {
+    // a tenant without a client yet hasn't sent anything
+    XeroClient client = tenant.client;
+    XeroRateLimiter limiter = client == null ? null : client.rateLimiter;
+    return limiter == null ? 0 : limiter.nanosUntilAvailable();
+  }
+
+  private XeroClient client(Tenant tenant) {
+    synchronized (tenant) {
+      if (tenant.client == null) {
+        XeroClient client = clientFactory.apply(tenant.name);
+        client.setTransport(transport);
+        tenant.client = client;
+      }
+      return tenant.client;
+    }
+  }
+
+  private static class Tenant {
+    final String name;
+    final Deque<Task<?>> tasks = new ArrayDeque<>();
+    int weight;
+    int served;
+    int running;
+    boolean ready;
+    boolean limited;
+    long lastUsed;
+    volatile XeroClient client;
+
+    Tenant(String name, int weight) {
+      this.name = name;
+      this.weight = weight;
+    }
+  }
+
+  private static class Task<T> {
+    final Function<? super XeroClient, T> request;
+    final SettableFuture<T> future = SettableFuture.create();
+    T result;
+    Throwable failure;
+
+    Task(Function<? super XeroClient, T> request) {
+      this.request = request;
+    }
+
+    void run(XeroClient client) {
+      if (future.isCancelled()) {
+        return;
+      }
+      try {
+        result = request.apply(client);
+      } catch (Throwable t) {
+        failure = t;
+      }
+    }
+
+    void complete() {
+      if (failure != null) {
+        future.setException(failure);
+      } else {
+        future.set(result);
+      }
+    }
+  }
+
+}
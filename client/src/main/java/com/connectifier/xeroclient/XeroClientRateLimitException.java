@@ -0,0 +1,18 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+/**
+ * Thrown without sending the request when the client-side limiter is configured to fail fast
+ * and has no permit available. Unlike a limit reported by Xero it is never retried, since
+ * failing fast is what the caller asked for.
+ */
+public class XeroClientRateLimitException extends XeroRateLimitException {
+
+  private static final long serialVersionUID = 1L;
+
+  public XeroClientRateLimitException(String message, boolean daily) {
+    super(message, daily);
+  }
+
+}
@@ -0,0 +1,37 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown when Xero rejects a request because a rate limit was exceeded, or as a
+ * {@link XeroClientRateLimitException} when the client-side limiter is configured to fail
+ * fast and has no permit available.
+ */
+public class XeroRateLimitException extends XeroApiException {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int RESPONSE_CODE = 503;
+
+  private final boolean daily;
+
+  public XeroRateLimitException(String message, boolean daily) {
+    this(message, daily, Collections.<String, String>emptyMap());
+  }
+
+  public XeroRateLimitException(String message, boolean daily, Map<String, String> headers) {
+    super(RESPONSE_CODE, message, headers);
+    this.daily = daily;
+  }
+
+  /**
+   * Whether the daily rather than the minute limit was exceeded.
+   */
+  public boolean isDaily() {
+    return daily;
+  }
+
+}
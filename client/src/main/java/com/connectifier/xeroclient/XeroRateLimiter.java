@@ -0,0 +1,166 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+/**
+ * Client-side limiter for Xero's per-organisation API limits, made of a per-minute and a
+ * per-day sliding window. Limiters are shared by tenant, so every client for the same
+ * organisation within the JVM draws from the same budget.
+ */
+public class XeroRateLimiter {
+
+  public static final int DEFAULT_CALLS_PER_MINUTE = 60;
+  public static final int DEFAULT_CALLS_PER_DAY = 5000;
+
+  private static final ConcurrentMap<String, XeroRateLimiter> TENANT_LIMITERS = new ConcurrentHashMap<>();
+
+  private final String tenant;
+  private final Ticker ticker;
+  private final SlidingWindow minuteWindow;
+  private final SlidingWindow dayWindow;
+
+  public XeroRateLimiter(String tenant, int callsPerMinute, int callsPerDay) {
+    this(tenant, callsPerMinute, callsPerDay, Ticker.systemTicker());
+  }
+
+  protected XeroRateLimiter(String tenant, int callsPerMinute, int callsPerDay, Ticker ticker) {
+    this.tenant = tenant;
+    this.ticker = ticker;
+    long now = ticker.read();
+    this.minuteWindow = new SlidingWindow(callsPerMinute, TimeUnit.MINUTES, now);
+    this.dayWindow = new SlidingWindow(callsPerDay, TimeUnit.DAYS, now);
+  }
+
+  /**
+   * Returns the limiter shared by all clients for the given tenant, e.g. a consumer key.
+   */
+  public static XeroRateLimiter forTenant(String tenant) {
+    XeroRateLimiter limiter = TENANT_LIMITERS.get(tenant);
+    if (limiter == null) {
+      limiter = new XeroRateLimiter(tenant, DEFAULT_CALLS_PER_MINUTE, DEFAULT_CALLS_PER_DAY);
+      XeroRateLimiter existing = TENANT_LIMITERS.putIfAbsent(tenant, limiter);
+      if (existing != null) {
+        limiter = existing;
+      }
+    }
+    return limiter;
+  }
+
+  public String getTenant() {
+    return tenant;
+  }
+
+  /**
+   * Takes a permit if one is available in both windows without waiting.
+   */
+  public boolean tryAcquire() {
+    return reserve() == 0;
+  }
+
+  /**
+   * Returns how long until a permit is available in both windows, or 0 if one is available
+   * now, without taking it.
+   */
+  public synchronized long nanosUntilAvailable() {
+    long now = ticker.read();
+    return Math.max(minuteWindow.nanosUntilAvailable(now), dayWindow.nanosUntilAvailable(now));
+  }
+
+  /**
+   * Blocks until a permit is available in both windows and takes it.
+   */
+  public void acquire() {
+    long waitNanos;
+    while ((waitNanos = reserve()) > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for a rate limit permit", e);
+      }
+    }
+  }
+
+  /**
+   * Fills the windows after Xero reported that a limit was hit, so that callers back off
+   * instead of spending requests that would be rejected anyway.
+   *
+   * @param daily whether the daily rather than the minute limit was exceeded
+   */
+  public synchronized void onLimitExceeded(boolean daily) {
+    long now = ticker.read();
+    minuteWindow.drain(now);
+    if (daily) {
+      dayWindow.drain(now);
+    }
+  }
+
+  /**
+   * Whether the daily budget has run out, as opposed to only the minute budget.
+   */
+  public synchronized boolean isDailyLimitReached() {
+    return dayWindow.nanosUntilAvailable(ticker.read()) > 0;
+  }
+
+  /**
+   * Takes a permit and returns 0, or returns how long to wait before one is available.
+   */
+  private synchronized long reserve() {
+    long now = ticker.read();
+    long wait = nanosUntilAvailable();
+    if (wait == 0) {
+      minuteWindow.take(now);
+      dayWindow.take(now);
+    }
+    return wait;
+  }
+
+  /**
+   * Remembers the times of the last limit permits in a ring, so that a permit is only granted
+   * once the oldest of them has left the window. Unlike a bucket that starts full and refills
+   * steadily, no window of the given length can ever contain more than limit permits.
+   */
+  private static class SlidingWindow {
+    private final long windowNanos;
+    private final long[] grants;
+    /** The index of the oldest grant, which the next one replaces. */
+    private int oldest;
+
+    private SlidingWindow(int limit, TimeUnit per, long now) {
+      Preconditions.checkArgument(limit > 0, "limit must be positive");
+      this.windowNanos = per.toNanos(1);
+      this.grants = new long[limit];
+      Arrays.fill(grants, now - windowNanos);
+    }
+
+    private long nanosUntilAvailable(long now) {
+      return Math.max(0, grants[oldest] + windowNanos - now);
+    }
+
+    private void take(long now) {
+      grants[oldest] = now;
+      oldest = (oldest + 1) % grants.length;
+    }
+
+    /**
+     * Fills the window as if permits had been granted evenly over the last period, so that
+     * they come back one at a time rather than all at once a whole period from now.
+     */
+    private void drain(long now) {
+      for (int i = 0; i < grants.length; i++) {
+        int index = (oldest + i) % grants.length;
+        long spread = now - windowNanos + (long) ((i + 1) * (double) windowNanos / grants.length);
+        grants[index] = Math.max(grants[index], spread);
+      }
+    }
+  }
+
+}
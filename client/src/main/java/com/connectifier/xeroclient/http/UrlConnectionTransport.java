@@ -0,0 +1,163 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Request;
+import org.scribe.model.Verb;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Default transport built on HttpURLConnection.
+ *
+ * At most {@code maxConnections} requests are in flight at once; further requests wait for a
+ * response to be closed. Responses are read to the end before being closed so that the JDK can
+ * keep the connection alive and reuse it, which avoids a TLS handshake per request. The number
+ * of idle connections kept per host is governed by the {@code http.maxConnections} system
+ * property. Responses are requested gzipped and decompressed transparently.
+ */
+public class UrlConnectionTransport implements XeroTransport {
+
+  public static final int DEFAULT_MAX_CONNECTIONS = 20;
+  public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+  public static final int DEFAULT_READ_TIMEOUT_MILLIS = 60000;
+
+  private final Semaphore connections;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+
+  public UrlConnectionTransport() {
+    this(DEFAULT_MAX_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+  }
+
+  public UrlConnectionTransport(int maxConnections, int connectTimeoutMillis, int readTimeoutMillis) {
+    Preconditions.checkArgument(maxConnections > 0, "maxConnections must be positive");
+    this.connections = new Semaphore(maxConnections, true);
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  @Override
+  public XeroHttpResponse send(OAuthRequest request) throws IOException {
+    try {
+      connections.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a connection", e);
+    }
+    boolean released = false;
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(request.getCompleteUrl()).openConnection();
+      connection.setRequestMethod(request.getVerb().name());
+      connection.setConnectTimeout(connectTimeoutMillis);
+      connection.setReadTimeout(readTimeoutMillis);
+      connection.setInstanceFollowRedirects(false);
+      connection.setRequestProperty("Accept-Encoding", "gzip");
+      for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+        connection.setRequestProperty(header.getKey(), header.getValue());
+      }
+      if (request.getVerb() == Verb.PUT || request.getVerb() == Verb.POST) {
+        writeBody(connection, request.getBodyContents().getBytes(request.getCharset()));
+      }
+
+      int code = connection.getResponseCode();
+      InputStream stream = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+      if (stream == null) {
+        stream = new ByteArrayInputStream(new byte[0]);
+      } else if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+        stream = new GZIPInputStream(stream);
+      }
+      XeroHttpResponse response = new XeroHttpResponse(code, parseHeaders(connection),
+          new ConnectionStream(stream, connection));
+      released = true;
+      return response;
+    } finally {
+      if (!released) {
+        connections.release();
+      }
+    }
+  }
+
+  private void writeBody(HttpURLConnection connection, byte[] body) throws IOException {
+    if (connection.getRequestProperty("Content-Type") == null) {
+      connection.setRequestProperty("Content-Type", Request.DEFAULT_CONTENT_TYPE);
+    }
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(body.length);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body);
+    }
+  }
+
+  private Map<String, String> parseHeaders(HttpURLConnection connection) {
+    Map<String, String> headers = new HashMap<>();
+    for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+      if (header.getKey() != null && !header.getValue().isEmpty()) {
+        headers.put(header.getKey(), header.getValue().get(0));
+      }
+    }
+    return headers;
+  }
+
+  /**
+   * Drains the body on close so the connection can be reused, and gives back the permit.
+   */
+  private class ConnectionStream extends FilterInputStream {
+
+    private static final long MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final HttpURLConnection connection;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private ConnectionStream(InputStream in, HttpURLConnection connection) {
+      super(in);
+      this.connection = connection;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        drain();
+        in.close();
+      } catch (IOException e) {
+        connection.disconnect();
+        throw e;
+      } finally {
+        connections.release();
+      }
+    }
+
+    private void drain() throws IOException {
+      byte[] buffer = new byte[4096];
+      long drained = 0;
+      int read;
+      while (drained < MAX_DRAIN_BYTES && (read = in.read(buffer)) >= 0) {
+        drained += read;
+      }
+      if (drained >= MAX_DRAIN_BYTES) {
+        // Not worth reading the rest just to keep the connection
+        connection.disconnect();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,75 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+
+/**
+ * A response whose body is read from the connection as it is consumed. Closing the response
+ * or its stream hands the connection back to the transport.
+ */
+public class XeroHttpResponse implements Closeable {
+
+  private final int code;
+  private final Map<String, String> headers;
+  private final InputStream stream;
+  private String body;
+
+  public XeroHttpResponse(int code, Map<String, String> headers, InputStream stream) {
+    this.code = code;
+    this.headers = Collections.unmodifiableMap(headers);
+    this.stream = stream;
+  }
+
+  public int getCode() {
+    return code;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Returns the value of the given header, ignoring case, or null.
+   */
+  public String getHeader(String name) {
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      if (name.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  public InputStream getStream() {
+    return stream;
+  }
+
+  /**
+   * Reads the whole body as UTF-8 and closes the stream. Meant for small bodies such as errors.
+   */
+  public String getBody() {
+    if (body == null) {
+      try (InputStreamReader reader = new InputStreamReader(stream, Charsets.UTF_8)) {
+        body = CharStreams.toString(reader);
+      } catch (IOException e) {
+        throw new IllegalStateException("Error while reading response body", e);
+      }
+    }
+    return body;
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+
+}
@@ -0,0 +1,21 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.http;
+
+import java.io.IOException;
+
+import org.scribe.model.OAuthRequest;
+
+/**
+ * Sends signed requests to Xero. Requests are built and signed with Scribe by the client,
+ * so implementations only need to put the request's verb, URL, headers and body on the wire.
+ * Implementations must be thread-safe.
+ */
+public interface XeroTransport {
+
+  /**
+   * Sends the request. The caller must close the returned response.
+   */
+  XeroHttpResponse send(OAuthRequest request) throws IOException;
+
+}
@@ -1,21 +1,143 @@
 package com.connectifier.xeroclient.jaxb;
 
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
 import javax.xml.bind.DatatypeConverter;
 
+/**
+ * Converts dates for the generated models and for request parameters. All methods are
+ * thread-safe.
+ *
+ * Printing works out the calendar fields arithmetically rather than through a Calendar or
+ * SimpleDateFormat, which are expensive to create and unsafe to share. Dates outside the
+ * years 1583 to 9999, where the Julian calendar or signed years come into play, fall back
+ * to the JDK classes so the output doesn't change.
+ */
 public class DateAdapter {
 
+  private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+  /** 1583-01-01T00:00:00Z, the first full year of the Gregorian calendar. */
+  private static final long MIN_FAST_MILLIS = -12212553600000L;
+  /** 10000-01-01T00:00:00Z. */
+  private static final long MAX_FAST_MILLIS = 253402300800000L;
+
   public static Date parseDateTime(String s) {
     return DatatypeConverter.parseDate(s).getTime();
   }
 
+  /**
+   * Prints the date in the default time zone followed by that zone's offset, exactly as
+   * {@link DatatypeConverter#printDate(Calendar)} does, e.g. {@code 2014-04-05+02:00}.
+   */
   public static String printDateTime(Date dt) {
-    Calendar cal = new GregorianCalendar();
-    cal.setTime(dt);
-    return DatatypeConverter.printDate(cal);
+    long millis = dt.getTime();
+    int offset = TimeZone.getDefault().getOffset(millis);
+    long local = millis + offset;
+    if (local < MIN_FAST_MILLIS || local >= MAX_FAST_MILLIS) {
+      Calendar cal = new GregorianCalendar();
+      cal.setTime(dt);
+      return DatatypeConverter.printDate(cal);
+    }
+    char[] buf = new char[16];
+    int pos = printDate(buf, 0, floorDiv(local, MILLIS_PER_DAY));
+    int minutes = offset / (60 * 1000);
+    if (minutes == 0) {
+      buf[pos++] = 'Z';
+    } else {
+      buf[pos++] = minutes > 0 ? '+' : '-';
+      minutes = Math.abs(minutes);
+      pos = print2(buf, pos, minutes / 60);
+      buf[pos++] = ':';
+      pos = print2(buf, pos, minutes % 60);
+    }
+    return new String(buf, 0, pos);
+  }
+
+  /**
+   * Prints the date and time in UTC without a zone designator, e.g. {@code 2014-04-05T17:35:20},
+   * as used by the If-Modified-Since header and UTC query parameters.
+   */
+  public static String printUtcDateTime(Date dt) {
+    long millis = dt.getTime();
+    if (millis < MIN_FAST_MILLIS || millis >= MAX_FAST_MILLIS) {
+      SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+      format.setTimeZone(TimeZone.getTimeZone("UTC"));
+      return format.format(dt);
+    }
+    char[] buf = new char[19];
+    long day = floorDiv(millis, MILLIS_PER_DAY);
+    int pos = printDate(buf, 0, day);
+    int seconds = (int) ((millis - day * MILLIS_PER_DAY) / 1000);
+    buf[pos++] = 'T';
+    pos = print2(buf, pos, seconds / 3600);
+    buf[pos++] = ':';
+    pos = print2(buf, pos, seconds / 60 % 60);
+    buf[pos++] = ':';
+    pos = print2(buf, pos, seconds % 60);
+    return new String(buf, 0, pos);
+  }
+
+  /**
+   * Returns the day since the epoch on which the date falls in the default time zone, which is
+   * the zone {@link #parseDateTime(String)} reads Xero's zone-less dates in.
+   */
+  public static int toEpochDay(Date dt) {
+    long millis = dt.getTime();
+    return (int) floorDiv(millis + TimeZone.getDefault().getOffset(millis), MILLIS_PER_DAY);
+  }
+
+  /**
+   * Returns the month of the given day since the epoch, counted in months since January 1970,
+   * e.g. 541 for any day in February 2015.
+   */
+  public static int toEpochMonth(long epochDay) {
+    // civil-from-days as in printDate, stopping at the month
+    long z = epochDay + 719468;
+    long era = floorDiv(z, 146097);
+    int doe = (int) (z - era * 146097);
+    int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    int mp = (5 * doy + 2) / 153;
+    int month = mp < 10 ? mp + 3 : mp - 9;
+    long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+    return (int) ((year - 1970) * 12 + month - 1);
+  }
+
+  /**
+   * Prints the proleptic Gregorian date of the given day since the epoch as yyyy-MM-dd.
+   */
+  private static int printDate(char[] buf, int pos, long epochDay) {
+    // civil-from-days, see http://howardhinnant.github.io/date_algorithms.html
+    long z = epochDay + 719468;
+    long era = floorDiv(z, 146097);
+    int doe = (int) (z - era * 146097);
+    int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    int mp = (5 * doy + 2) / 153;
+    int day = doy - (153 * mp + 2) / 5 + 1;
+    int month = mp < 10 ? mp + 3 : mp - 9;
+    int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+    pos = print2(buf, pos, year / 100);
+    pos = print2(buf, pos, year % 100);
+    buf[pos++] = '-';
+    pos = print2(buf, pos, month);
+    buf[pos++] = '-';
+    return print2(buf, pos, day);
+  }
+
+  private static int print2(char[] buf, int pos, int value) {
+    buf[pos] = (char) ('0' + value / 10);
+    buf[pos + 1] = (char) ('0' + value % 10);
+    return pos + 2;
+  }
+
+  private static long floorDiv(long x, long y) {
+    long q = x / y;
+    return (x % y != 0 && (x ^ y) < 0) ? q - 1 : q;
   }
 
 }
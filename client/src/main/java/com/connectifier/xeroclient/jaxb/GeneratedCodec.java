@@ -0,0 +1,89 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.google.common.base.Throwables;
+
+/**
+ * The StAX readers and writers that the xjc plugin generates into a model package as
+ * ModelCodec. They are called through method handles so that models generated without them
+ * still work with JAXB alone.
+ */
+class GeneratedCodec {
+
+  static final String CLASS_NAME = "ModelCodec";
+
+  private final MethodHandle supports;
+  private final MethodHandle read;
+  private final MethodHandle write;
+
+  private GeneratedCodec(MethodHandle supports, MethodHandle read, MethodHandle write) {
+    this.supports = supports;
+    this.read = read;
+    this.write = write;
+  }
+
+  /**
+   * Returns the codec generated alongside the given class, or null if there is none.
+   */
+  static GeneratedCodec forPackageOf(Class<?> root) {
+    if (root.getPackage() == null) {
+      return null;
+    }
+    String name = root.getPackage().getName() + "." + CLASS_NAME;
+    Class<?> clazz;
+    try {
+      clazz = Class.forName(name, true, root.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    try {
+      return new GeneratedCodec(
+          lookup.findStatic(clazz, "supports", MethodType.methodType(boolean.class, Class.class)),
+          lookup.findStatic(clazz, "read", MethodType.methodType(Object.class, XMLStreamReader.class, Class.class)),
+          lookup.findStatic(clazz, "write",
+              MethodType.methodType(void.class, XMLStreamWriter.class, String.class, Object.class)));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalStateException(name + " was not generated by a compatible plugin", e);
+    }
+  }
+
+  boolean supports(Class<?> clazz) {
+    try {
+      return (boolean) supports.invokeExact(clazz);
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+  }
+
+  /**
+   * Reads the element at the reader's cursor, leaving the cursor on its end tag.
+   */
+  <T> T read(XMLStreamReader reader, Class<T> clazz) throws XMLStreamException {
+    try {
+      return clazz.cast((Object) read.invokeExact(reader, clazz));
+    } catch (Throwable t) {
+      Throwables.propagateIfPossible(t, XMLStreamException.class);
+      throw new IllegalStateException(t);
+    }
+  }
+
+  void write(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+    try {
+      write.invokeExact(writer, name, value);
+    } catch (Throwable t) {
+      Throwables.propagateIfPossible(t, XMLStreamException.class);
+      throw new IllegalStateException(t);
+    }
+  }
+
+}
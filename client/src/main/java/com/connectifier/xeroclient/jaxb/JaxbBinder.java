@@ -0,0 +1,231 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.MarshalException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+
+import com.connectifier.xeroclient.models.ObjectFactory;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Shared, thread-safe JAXB binding layer. A JAXBContext is built once per model root and
+ * each thread reuses its own Marshaller and Unmarshaller, which are not thread-safe.
+ *
+ * Where the xjc plugin has generated StAX codecs for the models, they are used instead and the
+ * JAXBContext is only built if something needs it. {@link #withoutCodecs()} binds everything
+ * with JAXB, e.g. to compare the two.
+ */
+public class JaxbBinder {
+
+  private static final LoadingCache<Class<?>, JaxbBinder> BINDERS = CacheBuilder.newBuilder()
+      .build(new CacheLoader<Class<?>, JaxbBinder>() {
+        @Override
+        public JaxbBinder load(Class<?> root) {
+          return new JaxbBinder(root, GeneratedCodec.forPackageOf(root));
+        }
+      });
+
+  /** What the JAXB marshaller writes before the root element. */
+  private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+  private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+  static {
+    INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private final Class<?> root;
+  private final GeneratedCodec codec;
+  /** The binder whose context this one shares, or null if it builds its own. */
+  private final JaxbBinder contextOwner;
+  private volatile JAXBContext context;
+  private volatile JaxbBinder withoutCodecs;
+  private final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<>();
+  private final ThreadLocal<Marshaller> marshallers = new ThreadLocal<>();
+
+  protected JaxbBinder(JAXBContext context) {
+    this(null, null);
+    this.context = context;
+  }
+
+  protected JaxbBinder(Class<?> root, GeneratedCodec codec) {
+    this.root = root;
+    this.codec = codec;
+    this.contextOwner = null;
+  }
+
+  private JaxbBinder(JaxbBinder contextOwner) {
+    this.root = contextOwner.root;
+    this.codec = null;
+    this.contextOwner = contextOwner;
+  }
+
+  /**
+   * Returns the binder for the given class. All generated model classes share a single
+   * context rooted at their ObjectFactory.
+   */
+  public static JaxbBinder of(Class<?> clazz) throws JAXBException {
+    return BINDERS.getUnchecked(modelRoot(clazz));
+  }
+
+  /**
+   * Builds the model context and the calling thread's Marshaller and Unmarshaller so that
+   * the first request doesn't pay for them. There's nothing to build if the models have codecs.
+   */
+  public static void warmUp() {
+    try {
+      JaxbBinder binder = of(ObjectFactory.class);
+      if (binder.usesCodec(ObjectFactory.class)) {
+        return;
+      }
+      binder.unmarshaller();
+      binder.marshaller();
+    } catch (JAXBException e) {
+      throw new IllegalStateException("Error building JAXB context", e);
+    }
+  }
+
+  public static XMLStreamReader createStreamReader(InputStream stream) throws XMLStreamException {
+    return INPUT_FACTORY.createXMLStreamReader(stream);
+  }
+
+  private static Class<?> modelRoot(Class<?> clazz) {
+    if (clazz.getPackage() == ObjectFactory.class.getPackage()) {
+      return ObjectFactory.class;
+    }
+    return clazz;
+  }
+
+  /**
+   * Returns a binder for the same classes that binds everything with JAXB, sharing this
+   * binder's context.
+   */
+  public JaxbBinder withoutCodecs() {
+    if (codec == null) {
+      return this;
+    }
+    JaxbBinder result = withoutCodecs;
+    if (result == null) {
+      synchronized (this) {
+        if (withoutCodecs == null) {
+          withoutCodecs = new JaxbBinder(this);
+        }
+        result = withoutCodecs;
+      }
+    }
+    return result;
+  }
+
+  public JAXBContext getContext() throws JAXBException {
+    if (contextOwner != null) {
+      return contextOwner.getContext();
+    }
+    JAXBContext result = context;
+    if (result == null) {
+      synchronized (this) {
+        if (context == null) {
+          context = JAXBContext.newInstance(root);
+        }
+        result = context;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Whether the given class is bound by a generated codec rather than by JAXB.
+   */
+  public boolean usesCodec(Class<?> clazz) {
+    return codec != null && codec.supports(clazz);
+  }
+
+  public <T> T unmarshal(Source source, Class<T> clazz) throws JAXBException {
+    if (source instanceof StreamSource && usesCodec(clazz)) {
+      try {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(source);
+        try {
+          return codec.read(reader, clazz);
+        } finally {
+          reader.close();
+        }
+      } catch (XMLStreamException e) {
+        throw new UnmarshalException(e);
+      }
+    }
+    return unmarshaller().unmarshal(source, clazz).getValue();
+  }
+
+  /**
+   * Unmarshals the element at the reader's cursor, leaving the cursor on the event after its end tag.
+   */
+  public <T> T unmarshal(XMLStreamReader reader, Class<T> clazz) throws JAXBException {
+    if (usesCodec(clazz)) {
+      try {
+        T value = codec.read(reader, clazz);
+        reader.next();
+        return value;
+      } catch (XMLStreamException e) {
+        throw new UnmarshalException(e);
+      }
+    }
+    return unmarshaller().unmarshal(reader, clazz).getValue();
+  }
+
+  public void marshal(Object jaxbElement, Writer writer) throws JAXBException {
+    if (jaxbElement instanceof JAXBElement) {
+      JAXBElement<?> element = (JAXBElement<?>) jaxbElement;
+      if (element.getValue() != null && element.getName().getNamespaceURI().isEmpty()
+          && usesCodec(element.getValue().getClass())) {
+        try {
+          writer.write(XML_DECLARATION);
+          XMLStreamWriter xmlWriter = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+          codec.write(xmlWriter, element.getName().getLocalPart(), element.getValue());
+          xmlWriter.close();
+        } catch (XMLStreamException | IOException e) {
+          throw new MarshalException(e);
+        }
+        return;
+      }
+    }
+    marshaller().marshal(jaxbElement, writer);
+  }
+
+  protected Unmarshaller unmarshaller() throws JAXBException {
+    Unmarshaller unmarshaller = unmarshallers.get();
+    if (unmarshaller == null) {
+      unmarshaller = getContext().createUnmarshaller();
+      unmarshallers.set(unmarshaller);
+    }
+    return unmarshaller;
+  }
+
+  protected Marshaller marshaller() throws JAXBException {
+    Marshaller marshaller = marshallers.get();
+    if (marshaller == null) {
+      marshaller = getContext().createMarshaller();
+      marshallers.set(marshaller);
+    }
+    return marshaller;
+  }
+
+}
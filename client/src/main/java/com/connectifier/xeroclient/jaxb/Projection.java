@@ -0,0 +1,176 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Set;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Unmarshals a single collection of a response document, e.g. the Invoices of a Response,
+ * and skips the rest of the document without binding it. The other properties of the
+ * returned object are left unset.
+ *
+ * Elements can also be excluded wherever they appear below the collection, so that e.g.
+ * invoices can be read without their line items.
+ */
+public class Projection<T> {
+
+  private final Class<T> root;
+  private final String collection;
+  private final Field field;
+  private final Set<String> excluded;
+
+  private Projection(Class<T> root, String collection, Field field, Set<String> excluded) {
+    this.root = root;
+    this.collection = collection;
+    this.field = field;
+    this.excluded = excluded;
+  }
+
+  /**
+   * Returns a projection onto the child element of the root with the given name, or null if
+   * the root has no such element.
+   */
+  public static <T> Projection<T> of(Class<T> root, String collection) {
+    for (Field field : root.getDeclaredFields()) {
+      XmlElement element = field.getAnnotation(XmlElement.class);
+      if (element != null && element.name().equals(collection)) {
+        field.setAccessible(true);
+        return new Projection<>(root, collection, field, ImmutableSet.<String>of());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a projection that also skips the named elements below the collection.
+   */
+  public Projection<T> excluding(String... elementNames) {
+    return new Projection<>(root, collection, field,
+        ImmutableSet.<String>builder().addAll(excluded).add(elementNames).build());
+  }
+
+  public String getCollection() {
+    return collection;
+  }
+
+  public T unmarshal(InputStream stream) throws JAXBException, XMLStreamException {
+    return unmarshal(stream, JaxbBinder.of(field.getType()));
+  }
+
+  /**
+   * Unmarshals the collection with the given binder, which has to bind its type.
+   */
+  public T unmarshal(InputStream stream, JaxbBinder binder) throws JAXBException, XMLStreamException {
+    XMLStreamReader reader = JaxbBinder.createStreamReader(stream);
+    try {
+      return unmarshal(excluded.isEmpty() ? reader : new ExcludingReader(reader, excluded), binder);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private T unmarshal(XMLStreamReader reader, JaxbBinder binder) throws JAXBException, XMLStreamException {
+    T result;
+    try {
+      result = root.newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new IllegalStateException("Cannot create " + root, e);
+    }
+    int depth = 0;
+    int event = reader.getEventType();
+    while (event != XMLStreamConstants.END_DOCUMENT) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        if (depth == 2) {
+          if (collection.equals(reader.getLocalName())) {
+            set(result, binder.unmarshal(reader, field.getType()));
+            depth--;
+            // the cursor has already been moved past the end of the collection
+            event = reader.getEventType();
+            continue;
+          }
+          skipElement(reader);
+          depth--;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+      event = reader.next();
+    }
+    return result;
+  }
+
+  private void set(T result, Object value) {
+    try {
+      field.set(result, value);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Cannot set " + field, e);
+    }
+  }
+
+  /**
+   * Moves the cursor from a start tag to its matching end tag.
+   */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Hides the excluded elements, with everything inside them, from whoever reads the stream.
+   */
+  private static class ExcludingReader extends StreamReaderDelegate {
+
+    private final Set<String> excluded;
+
+    ExcludingReader(XMLStreamReader reader, Set<String> excluded) {
+      super(reader);
+      this.excluded = excluded;
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+      int event = super.next();
+      while (event == XMLStreamConstants.START_ELEMENT && excluded.contains(getLocalName())) {
+        skipElement(getParent());
+        event = super.next();
+      }
+      return event;
+    }
+
+    @Override
+    public int nextTag() throws XMLStreamException {
+      int event = next();
+      while ((event == XMLStreamConstants.CHARACTERS && isWhiteSpace())
+          || event == XMLStreamConstants.SPACE
+          || event == XMLStreamConstants.COMMENT
+          || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+        event = next();
+      }
+      if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+        throw new XMLStreamException("Expected a start or end tag", getLocation());
+      }
+      return event;
+    }
+
+  }
+
+}
@@ -0,0 +1,68 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Lazily unmarshals each element with the given name from a stream, so that only one
+ * entity is materialized at a time regardless of the size of the document.
+ */
+public class StaxElementIterator<T> extends AbstractIterator<T> implements Closeable {
+
+  private final InputStream stream;
+  private final XMLStreamReader reader;
+  private final String elementName;
+  private final Class<T> clazz;
+  private final JaxbBinder binder;
+
+  public StaxElementIterator(InputStream stream, String elementName, Class<T> clazz)
+      throws JAXBException, XMLStreamException {
+    this(stream, elementName, clazz, JaxbBinder.of(clazz));
+  }
+
+  public StaxElementIterator(InputStream stream, String elementName, Class<T> clazz, JaxbBinder binder)
+      throws XMLStreamException {
+    this.stream = stream;
+    this.reader = JaxbBinder.createStreamReader(stream);
+    this.elementName = elementName;
+    this.clazz = clazz;
+    this.binder = binder;
+  }
+
+  @Override
+  protected T computeNext() {
+    try {
+      while (reader.hasNext()) {
+        if (reader.getEventType() == XMLStreamConstants.START_ELEMENT && elementName.equals(reader.getLocalName())) {
+          return binder.unmarshal(reader, clazz);
+        }
+        reader.next();
+      }
+      return endOfData();
+    } catch (JAXBException | XMLStreamException e) {
+      throw new IllegalStateException("Error unmarshalling " + elementName, e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    } finally {
+      stream.close();
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Canonicalizes the values of model fields that repeat across a response, such as account
+ * codes, tax types and contact IDs, so that entities kept in memory share one instance of
+ * each instead of holding a copy apiece. bindings.xjb routes those fields through
+ * {@link #intern(String)} as they are unmarshalled.
+ *
+ * Interning is off until {@link #enable(long)} is called. The table is bounded and evicts
+ * the least recently used values, so unique values only cost a slot until they age out.
+ */
+public class StringInterner {
+
+  public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+  private static volatile Cache<String, String> table;
+
+  public static void enable() {
+    enable(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Starts interning with a new, empty table holding at most the given number of values.
+   */
+  public static void enable(long maximumSize) {
+    Preconditions.checkArgument(maximumSize > 0, "maximumSize must be positive");
+    table = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  public static void disable() {
+    table = null;
+  }
+
+  public static boolean isEnabled() {
+    return table != null;
+  }
+
+  /**
+   * Returns the shared instance equal to the value, or the value itself if interning is off.
+   */
+  public static String intern(String value) {
+    Cache<String, String> table = StringInterner.table;
+    if (table == null || value == null) {
+      return value;
+    }
+    String interned = table.getIfPresent(value);
+    if (interned != null) {
+      return interned;
+    }
+    interned = table.asMap().putIfAbsent(value, value);
+    return interned == null ? value : interned;
+  }
+
+  public static String print(String value) {
+    return value;
+  }
+
+  /**
+   * The hits, misses and evictions since interning was last enabled, or empty stats if it is
+   * off.
+   */
+  public static CacheStats stats() {
+    Cache<String, String> table = StringInterner.table;
+    return table == null ? new CacheStats(0, 0, 0, 0, 0, 0) : table.stats();
+  }
+
+  public static long size() {
+    Cache<String, String> table = StringInterner.table;
+    return table == null ? 0 : table.size();
+  }
+
+}
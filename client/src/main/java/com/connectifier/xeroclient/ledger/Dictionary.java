@@ -0,0 +1,36 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.ledger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns consecutive ints to distinct strings, in the order they are first seen.
+ */
+class Dictionary {
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final List<String> values = new ArrayList<>();
+
+  int id(String value) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = values.size();
+      ids.put(value, id);
+      values.add(value);
+    }
+    return id;
+  }
+
+  int size() {
+    return values.size();
+  }
+
+  String[] toArray() {
+    return values.toArray(new String[values.size()]);
+  }
+
+}
@@ -0,0 +1,168 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.ledger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.connectifier.xeroclient.EntityHandler;
+import com.connectifier.xeroclient.jaxb.DateAdapter;
+import com.connectifier.xeroclient.models.Journal;
+import com.connectifier.xeroclient.models.JournalLine;
+import com.connectifier.xeroclient.models.TrackingCategory;
+
+/**
+ * Collects journal lines into columns for a {@link LedgerSnapshot}. As an EntityHandler it can
+ * be handed straight to XeroClient.streamJournals or a JournalReplay, so the journals are
+ * dropped as soon as their lines have been copied.
+ *
+ * Not thread-safe. Building doesn't reset the builder, so it can keep ingesting journals and
+ * build newer snapshots.
+ */
+public class LedgerBuilder implements EntityHandler<Journal> {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final Dictionary accounts = new Dictionary();
+  private final List<String> accountCodes = new ArrayList<>();
+  private final List<String> accountNames = new ArrayList<>();
+  private final Dictionary taxTypes = new Dictionary();
+  private final Dictionary trackingCategories = new Dictionary();
+  private final List<Dictionary> trackingOptions = new ArrayList<>();
+
+  private int size;
+  private int[] journalNumbers = new int[INITIAL_CAPACITY];
+  private int[] days = new int[INITIAL_CAPACITY];
+  private int[] accountIds = new int[INITIAL_CAPACITY];
+  private int[] taxTypeIds = new int[INITIAL_CAPACITY];
+  private long[] netAmounts = new long[INITIAL_CAPACITY];
+  private long[] taxAmounts = new long[INITIAL_CAPACITY];
+  /** The option of each line per tracking category, or -1. */
+  private final List<int[]> trackingOptionIds = new ArrayList<>();
+
+  @Override
+  public void handle(Journal journal) {
+    add(journal);
+  }
+
+  public LedgerBuilder add(Journal journal) {
+    if (journal.getJournalNumber() == null || journal.getJournalDate() == null) {
+      throw new IllegalArgumentException("Journal " + journal.getJournalID() + " has no number or date");
+    }
+    int journalNumber = journal.getJournalNumber();
+    int day = DateAdapter.toEpochDay(journal.getJournalDate());
+    List<JournalLine> lines = journal.getJournalLines();
+    // every line is checked before any is added, so that a bad journal leaves the builder as it was
+    long[] net = new long[lines.size()];
+    long[] tax = new long[lines.size()];
+    for (int i = 0; i < lines.size(); i++) {
+      JournalLine line = lines.get(i);
+      if (line == null) {
+        continue;
+      }
+      if (accountKey(line) == null) {
+        throw new IllegalArgumentException("Journal line " + line.getJournalLineID() + " has no account");
+      }
+      net[i] = minorUnits(line.getNetAmount(), journal);
+      tax[i] = minorUnits(line.getTaxAmount(), journal);
+    }
+    ensureCapacity(size + lines.size());
+    for (int i = 0; i < lines.size(); i++) {
+      JournalLine line = lines.get(i);
+      if (line == null) {
+        continue;
+      }
+      journalNumbers[size] = journalNumber;
+      days[size] = day;
+      accountIds[size] = account(line);
+      taxTypeIds[size] = line.getTaxType() == null ? -1 : taxTypes.id(line.getTaxType());
+      netAmounts[size] = net[i];
+      taxAmounts[size] = tax[i];
+      for (int[] options : trackingOptionIds) {
+        options[size] = -1;
+      }
+      for (TrackingCategory tracking : line.getTrackingCategories()) {
+        if (tracking != null && tracking.getName() != null && tracking.getOption() != null) {
+          int category = trackingCategory(tracking.getName());
+          trackingOptionIds.get(category)[size] = trackingOptions.get(category).id(tracking.getOption());
+        }
+      }
+      size++;
+    }
+    return this;
+  }
+
+  public LedgerSnapshot build() {
+    int categories = trackingCategories.size();
+    int[][] tracking = new int[categories][];
+    String[][] options = new String[categories][];
+    for (int i = 0; i < categories; i++) {
+      tracking[i] = Arrays.copyOf(trackingOptionIds.get(i), size);
+      options[i] = trackingOptions.get(i).toArray();
+    }
+    return new LedgerSnapshot(size, Arrays.copyOf(journalNumbers, size), Arrays.copyOf(days, size),
+        Arrays.copyOf(accountIds, size), Arrays.copyOf(taxTypeIds, size), Arrays.copyOf(netAmounts, size),
+        Arrays.copyOf(taxAmounts, size), tracking, accounts.toArray(),
+        accountCodes.toArray(new String[accountCodes.size()]), accountNames.toArray(new String[accountNames.size()]),
+        taxTypes.toArray(), trackingCategories.toArray(), options);
+  }
+
+  /**
+   * Accounts are keyed by AccountID, falling back to the code for lines without one. The code
+   * and name are those of the first line seen for the account.
+   */
+  private int account(JournalLine line) {
+    int id = accounts.id(accountKey(line));
+    if (id == accountCodes.size()) {
+      accountCodes.add(line.getAccountCode());
+      accountNames.add(line.getAccountName());
+    }
+    return id;
+  }
+
+  private static String accountKey(JournalLine line) {
+    return line.getAccountID() != null ? line.getAccountID() : line.getAccountCode();
+  }
+
+  private int trackingCategory(String name) {
+    int category = trackingCategories.id(name);
+    if (category == trackingOptionIds.size()) {
+      int[] options = new int[journalNumbers.length];
+      Arrays.fill(options, 0, size + 1, -1);
+      trackingOptionIds.add(options);
+      trackingOptions.add(new Dictionary());
+    }
+    return category;
+  }
+
+  private static long minorUnits(BigDecimal amount, Journal journal) {
+    if (amount == null) {
+      return 0;
+    }
+    try {
+      return amount.movePointRight(LedgerSnapshot.AMOUNT_SCALE).longValueExact();
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Journal " + journal.getJournalNumber() + " has an amount of " + amount
+          + " which doesn't fit in " + LedgerSnapshot.AMOUNT_SCALE + " decimal places", e);
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= journalNumbers.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, journalNumbers.length + (journalNumbers.length >> 1));
+    journalNumbers = Arrays.copyOf(journalNumbers, newCapacity);
+    days = Arrays.copyOf(days, newCapacity);
+    accountIds = Arrays.copyOf(accountIds, newCapacity);
+    taxTypeIds = Arrays.copyOf(taxTypeIds, newCapacity);
+    netAmounts = Arrays.copyOf(netAmounts, newCapacity);
+    taxAmounts = Arrays.copyOf(taxAmounts, newCapacity);
+    for (int i = 0; i < trackingOptionIds.size(); i++) {
+      trackingOptionIds.set(i, Arrays.copyOf(trackingOptionIds.get(i), newCapacity));
+    }
+  }
+
+}
@@ -0,0 +1,343 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.ledger;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.connectifier.xeroclient.jaxb.DateAdapter;
+
+/**
+ * An immutable, column-oriented copy of a tenant's journal lines, for reporting over the whole
+ * ledger without holding the journals themselves. Build one with a {@link LedgerBuilder}.
+ *
+ * Each line is a row across primitive columns: the journal number, the journal date as a day
+ * since the epoch, amounts in minor units (cents), and ints that index dictionaries of the
+ * accounts, tax types and tracking options. A line takes 32 bytes plus 4 per tracking
+ * category. Descriptions and the other free text of the journals are not kept.
+ *
+ * Rows are identified by their index, from 0 to {@link #size()}. Aggregates can run in
+ * parallel on a ForkJoinPool by splitting the rows into ranges.
+ */
+public class LedgerSnapshot {
+
+  /** The number of decimal places in the amount columns. */
+  public static final int AMOUNT_SCALE = 2;
+
+  /** Below this many rows an aggregate isn't split any further. */
+  static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  private final int size;
+  private final int[] journalNumbers;
+  private final int[] days;
+  private final int[] accounts;
+  private final int[] taxTypes;
+  private final long[] netAmounts;
+  private final long[] taxAmounts;
+  private final int[][] trackingOptions;
+
+  private final String[] accountKeys;
+  private final String[] accountCodes;
+  private final String[] accountNames;
+  private final String[] taxTypeNames;
+  private final String[] trackingCategoryNames;
+  private final String[][] trackingOptionNames;
+
+  /** The epoch month of each day from minDay on, so scans don't have to work it out. */
+  private final int minDay;
+  private final int[] months;
+
+  LedgerSnapshot(int size, int[] journalNumbers, int[] days, int[] accounts, int[] taxTypes, long[] netAmounts,
+      long[] taxAmounts, int[][] trackingOptions, String[] accountKeys, String[] accountCodes, String[] accountNames,
+      String[] taxTypeNames, String[] trackingCategoryNames, String[][] trackingOptionNames) {
+    this.size = size;
+    this.journalNumbers = journalNumbers;
+    this.days = days;
+    this.accounts = accounts;
+    this.taxTypes = taxTypes;
+    this.netAmounts = netAmounts;
+    this.taxAmounts = taxAmounts;
+    this.trackingOptions = trackingOptions;
+    this.accountKeys = accountKeys;
+    this.accountCodes = accountCodes;
+    this.accountNames = accountNames;
+    this.taxTypeNames = taxTypeNames;
+    this.trackingCategoryNames = trackingCategoryNames;
+    this.trackingOptionNames = trackingOptionNames;
+
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      min = Math.min(min, days[i]);
+      max = Math.max(max, days[i]);
+    }
+    this.minDay = size == 0 ? 0 : min;
+    this.months = new int[size == 0 ? 0 : max - min + 1];
+    for (int i = 0; i < months.length; i++) {
+      months[i] = DateAdapter.toEpochMonth(minDay + i);
+    }
+  }
+
+  /**
+   * Filters rows for {@link LedgerSnapshot#select(RowFilter)} and
+   * {@link LedgerSnapshot#sumNetAmounts(RowFilter)}.
+   */
+  public interface RowFilter {
+
+    boolean accept(LedgerSnapshot ledger, int row);
+
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getJournalNumber(int row) {
+    return journalNumbers[row];
+  }
+
+  /**
+   * The journal date as a day since the epoch, see {@link DateAdapter#toEpochDay(java.util.Date)}.
+   */
+  public int getEpochDay(int row) {
+    return days[row];
+  }
+
+  /**
+   * The journal date as a month since January 1970, see {@link DateAdapter#toEpochMonth(long)}.
+   */
+  public int getEpochMonth(int row) {
+    return months[days[row] - minDay];
+  }
+
+  public int getAccount(int row) {
+    return accounts[row];
+  }
+
+  /**
+   * The tax type, or -1 if the line has none.
+   */
+  public int getTaxType(int row) {
+    return taxTypes[row];
+  }
+
+  public long getNetAmount(int row) {
+    return netAmounts[row];
+  }
+
+  public long getTaxAmount(int row) {
+    return taxAmounts[row];
+  }
+
+  public long getGrossAmount(int row) {
+    return netAmounts[row] + taxAmounts[row];
+  }
+
+  /**
+   * The option of the line in the given tracking category, or -1 if it isn't tracked by it.
+   */
+  public int getTrackingOption(int trackingCategory, int row) {
+    return trackingOptions[trackingCategory][row];
+  }
+
+  public int getAccountCount() {
+    return accountKeys.length;
+  }
+
+  /**
+   * The AccountID of the account, or its code if the journals didn't include the ID.
+   */
+  public String getAccountID(int account) {
+    return accountKeys[account];
+  }
+
+  public String getAccountCode(int account) {
+    return accountCodes[account];
+  }
+
+  public String getAccountName(int account) {
+    return accountNames[account];
+  }
+
+  /**
+   * Returns the first account with the given code, or -1 if there is none.
+   */
+  public int findAccountByCode(String accountCode) {
+    for (int i = 0; i < accountCodes.length; i++) {
+      if (accountCode.equals(accountCodes[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public int getTaxTypeCount() {
+    return taxTypeNames.length;
+  }
+
+  public String getTaxTypeName(int taxType) {
+    return taxTypeNames[taxType];
+  }
+
+  public int getTrackingCategoryCount() {
+    return trackingCategoryNames.length;
+  }
+
+  public String getTrackingCategoryName(int trackingCategory) {
+    return trackingCategoryNames[trackingCategory];
+  }
+
+  public int getTrackingOptionCount(int trackingCategory) {
+    return trackingOptionNames[trackingCategory].length;
+  }
+
+  public String getTrackingOptionName(int trackingCategory, int trackingOption) {
+    return trackingOptionNames[trackingCategory][trackingOption];
+  }
+
+  public static BigDecimal toBigDecimal(long amount) {
+    return BigDecimal.valueOf(amount, AMOUNT_SCALE);
+  }
+
+  /**
+   * Returns the rows the filter accepts, in order.
+   */
+  public int[] select(RowFilter filter) {
+    int[] rows = new int[16];
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (filter.accept(this, i)) {
+        if (count == rows.length) {
+          rows = Arrays.copyOf(rows, count * 2);
+        }
+        rows[count++] = i;
+      }
+    }
+    return Arrays.copyOf(rows, count);
+  }
+
+  public long sumNetAmounts(RowFilter filter) {
+    long sum = 0;
+    for (int i = 0; i < size; i++) {
+      if (filter.accept(this, i)) {
+        sum += netAmounts[i];
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the net movement of each account, indexed by account, over the journals dated from
+   * fromDay up to but excluding toDay. The balances as of a day are the movements from
+   * Integer.MIN_VALUE up to the following day.
+   */
+  public long[] trialBalance(int fromDay, int toDay) {
+    return trialBalance(fromDay, toDay, 0, size);
+  }
+
+  public long[] trialBalance(final int fromDay, final int toDay, ForkJoinPool pool) {
+    return pool.invoke(new Aggregate(new RangeAggregate() {
+      @Override
+      public long[] compute(int start, int end) {
+        return trialBalance(fromDay, toDay, start, end);
+      }
+    }, 0, size));
+  }
+
+  /**
+   * Returns the net movement of each account in each month from fromMonth up to but excluding
+   * toMonth, with months counted from January 1970, as {@code [account][month - fromMonth]}.
+   */
+  public long[][] trialBalanceByMonth(int fromMonth, int toMonth) {
+    return byAccount(trialBalanceByMonth(fromMonth, toMonth, 0, size), toMonth - fromMonth);
+  }
+
+  public long[][] trialBalanceByMonth(final int fromMonth, final int toMonth, ForkJoinPool pool) {
+    return byAccount(pool.invoke(new Aggregate(new RangeAggregate() {
+      @Override
+      public long[] compute(int start, int end) {
+        return trialBalanceByMonth(fromMonth, toMonth, start, end);
+      }
+    }, 0, size)), toMonth - fromMonth);
+  }
+
+  private long[] trialBalance(int fromDay, int toDay, int start, int end) {
+    long[] balances = new long[accountKeys.length];
+    for (int i = start; i < end; i++) {
+      int day = days[i];
+      if (day >= fromDay && day < toDay) {
+        balances[accounts[i]] += netAmounts[i];
+      }
+    }
+    return balances;
+  }
+
+  /**
+   * Sums into a single array laid out as account * months + month, to avoid an array per account.
+   */
+  private long[] trialBalanceByMonth(int fromMonth, int toMonth, int start, int end) {
+    int periods = Math.max(0, toMonth - fromMonth);
+    long[] balances = new long[accountKeys.length * periods];
+    for (int i = start; i < end; i++) {
+      int period = months[days[i] - minDay] - fromMonth;
+      if (period >= 0 && period < periods) {
+        balances[accounts[i] * periods + period] += netAmounts[i];
+      }
+    }
+    return balances;
+  }
+
+  private long[][] byAccount(long[] balances, int periods) {
+    long[][] byAccount = new long[accountKeys.length][];
+    for (int account = 0; account < byAccount.length; account++) {
+      byAccount[account] = Arrays.copyOfRange(balances, account * Math.max(0, periods),
+          (account + 1) * Math.max(0, periods));
+    }
+    return byAccount;
+  }
+
+  private interface RangeAggregate {
+
+    long[] compute(int start, int end);
+
+  }
+
+  /**
+   * Sums a per-range aggregate of the rows, splitting the range in half until it is small
+   * enough to compute directly.
+   */
+  private static class Aggregate extends RecursiveTask<long[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RangeAggregate aggregate;
+    private final int start;
+    private final int end;
+
+    Aggregate(RangeAggregate aggregate, int start, int end) {
+      this.aggregate = aggregate;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected long[] compute() {
+      if (end - start <= PARALLEL_THRESHOLD) {
+        return aggregate.compute(start, end);
+      }
+      int middle = (start + end) >>> 1;
+      Aggregate left = new Aggregate(aggregate, start, middle);
+      left.fork();
+      long[] sums = new Aggregate(aggregate, middle, end).compute();
+      long[] other = left.join();
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] += other[i];
+      }
+      return sums;
+    }
+
+  }
+
+}
@@ -0,0 +1,114 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.connectifier.xeroclient.XeroApiException;
+import com.connectifier.xeroclient.jaxb.StringInterner;
+
+/**
+ * Records measurements in a Dropwizard Metrics registry under
+ * {@code <prefix>.<tenant>.<endpoint>.<metric>}: timers for the sign, network and unmarshal
+ * phases, histograms for bytes out, bytes in and entities, and meters for retries, rate
+ * limit hits and each error response code.
+ *
+ * metrics-core is an optional dependency of the client and must be on the classpath to use
+ * this class.
+ */
+public class DropwizardInstrumentation implements XeroInstrumentation {
+
+  public static final String DEFAULT_PREFIX = "xero";
+
+  protected final MetricRegistry registry;
+  protected final String prefix;
+
+  public DropwizardInstrumentation(MetricRegistry registry) {
+    this(registry, DEFAULT_PREFIX);
+  }
+
+  public DropwizardInstrumentation(MetricRegistry registry, String prefix) {
+    this.registry = registry;
+    this.prefix = prefix;
+  }
+
+  protected String name(String tenant, String endPoint, String... names) {
+    return MetricRegistry.name(MetricRegistry.name(prefix, tenant, endPoint), names);
+  }
+
+  /**
+   * Registers gauges for the {@link StringInterner} under {@code <prefix>.interner}: its hit
+   * rate, hits, misses, evictions and size. The interner is shared by all clients, so call
+   * this once per registry.
+   */
+  public void registerStringInterner() {
+    registry.register(MetricRegistry.name(prefix, "interner", "hit-rate"), new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        return StringInterner.stats().hitRate();
+      }
+    });
+    registry.register(MetricRegistry.name(prefix, "interner", "hits"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return StringInterner.stats().hitCount();
+      }
+    });
+    registry.register(MetricRegistry.name(prefix, "interner", "misses"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return StringInterner.stats().missCount();
+      }
+    });
+    registry.register(MetricRegistry.name(prefix, "interner", "evictions"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return StringInterner.stats().evictionCount();
+      }
+    });
+    registry.register(MetricRegistry.name(prefix, "interner", "size"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return StringInterner.size();
+      }
+    });
+  }
+
+  @Override
+  public void onSigned(String tenant, String endPoint, long nanos) {
+    registry.timer(name(tenant, endPoint, "sign")).update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void onResponse(String tenant, String endPoint, int responseCode, long networkNanos, long bytesOut) {
+    registry.timer(name(tenant, endPoint, "network")).update(networkNanos, TimeUnit.NANOSECONDS);
+    registry.histogram(name(tenant, endPoint, "bytes-out")).update(bytesOut);
+  }
+
+  @Override
+  public void onUnmarshalled(String tenant, String endPoint, long nanos, long bytesIn, int entities) {
+    registry.timer(name(tenant, endPoint, "unmarshal")).update(nanos, TimeUnit.NANOSECONDS);
+    registry.histogram(name(tenant, endPoint, "bytes-in")).update(bytesIn);
+    if (entities >= 0) {
+      registry.histogram(name(tenant, endPoint, "entities")).update(entities);
+    }
+  }
+
+  @Override
+  public void onRetry(String tenant, String endPoint, int attempt, RuntimeException cause) {
+    registry.meter(name(tenant, endPoint, "retries")).mark();
+  }
+
+  @Override
+  public void onRateLimited(String tenant, String endPoint, boolean daily, boolean clientSide) {
+    registry.meter(name(tenant, endPoint, "rate-limited", daily ? "daily" : "minute")).mark();
+  }
+
+  @Override
+  public void onApiException(String tenant, String endPoint, XeroApiException exception) {
+    registry.meter(name(tenant, endPoint, "errors", String.valueOf(exception.getResponseCode()))).mark();
+  }
+
+}
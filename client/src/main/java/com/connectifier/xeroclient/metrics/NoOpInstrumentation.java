@@ -0,0 +1,38 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.metrics;
+
+import com.connectifier.xeroclient.XeroApiException;
+
+/**
+ * Ignores every measurement. The client's default.
+ */
+public class NoOpInstrumentation implements XeroInstrumentation {
+
+  public static final NoOpInstrumentation INSTANCE = new NoOpInstrumentation();
+
+  @Override
+  public void onSigned(String tenant, String endPoint, long nanos) {
+  }
+
+  @Override
+  public void onResponse(String tenant, String endPoint, int responseCode, long networkNanos, long bytesOut) {
+  }
+
+  @Override
+  public void onUnmarshalled(String tenant, String endPoint, long nanos, long bytesIn, int entities) {
+  }
+
+  @Override
+  public void onRetry(String tenant, String endPoint, int attempt, RuntimeException cause) {
+  }
+
+  @Override
+  public void onRateLimited(String tenant, String endPoint, boolean daily, boolean clientSide) {
+  }
+
+  @Override
+  public void onApiException(String tenant, String endPoint, XeroApiException exception) {
+  }
+
+}
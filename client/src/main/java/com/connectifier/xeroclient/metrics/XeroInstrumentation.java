@@ -0,0 +1,43 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.metrics;
+
+import com.connectifier.xeroclient.XeroApiException;
+
+/**
+ * Receives measurements from the request pipeline. Calls are made on the requesting thread,
+ * so implementations must be thread-safe and fast.
+ *
+ * The endpoint is the first path segment, e.g. Invoices for Invoices/{id}, and the tenant is
+ * the client's consumer key. Extend {@link NoOpInstrumentation} to handle only some events.
+ */
+public interface XeroInstrumentation {
+
+  void onSigned(String tenant, String endPoint, long nanos);
+
+  /**
+   * Called once the response headers have arrived, with the time spent waiting for them and
+   * the size in bytes of the marshalled request body, or 0 if the request has none.
+   */
+  void onResponse(String tenant, String endPoint, int responseCode, long networkNanos, long bytesOut);
+
+  /**
+   * Called once the body of a successful response has been read and unmarshalled, with the
+   * number of entities of the endpoint's type or -1 if they weren't counted.
+   */
+  void onUnmarshalled(String tenant, String endPoint, long nanos, long bytesIn, int entities);
+
+  void onRetry(String tenant, String endPoint, int attempt, RuntimeException cause);
+
+  /**
+   * Called when a request is refused for exceeding a rate limit, by Xero or by the client's
+   * own limiter.
+   */
+  void onRateLimited(String tenant, String endPoint, boolean daily, boolean clientSide);
+
+  /**
+   * Called for every response other than a 200, including rate limited ones.
+   */
+  void onApiException(String tenant, String endPoint, XeroApiException exception);
+
+}
@@ -0,0 +1,95 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.oauth;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Parses PEM encoded private keys once per distinct key, so that creating a client for a
+ * tenant whose key was seen before skips the parsing. Keys are cached by the SHA-256
+ * fingerprint of their PEM text.
+ *
+ * The cache is bounded and keys that haven't been asked for in a while are dropped, so that
+ * key material of tenants that are gone isn't kept for the life of the JVM. Clients hold on
+ * to their own key, so dropping it from the cache only means parsing it again next time.
+ */
+public class PrivateKeyRegistry {
+
+  public static final long MAXIMUM_SIZE = 1000;
+  public static final long EXPIRE_AFTER_ACCESS_MINUTES = 60;
+
+  private static final Cache<String, PrivateKey> KEYS = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_SIZE)
+      .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES)
+      .build();
+
+  static {
+    if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+      Security.addProvider(new BouncyCastleProvider());
+    }
+  }
+
+  public static PrivateKey get(Reader pemReader) {
+    final String pem;
+    try {
+      pem = CharStreams.toString(pemReader);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    try {
+      return KEYS.get(fingerprint(pem), new Callable<PrivateKey>() {
+        @Override
+        public PrivateKey call() {
+          return parse(pem);
+        }
+      });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  public static String fingerprint(String pem) {
+    return Hashing.sha256().hashString(pem.trim(), Charsets.UTF_8).toString();
+  }
+
+  /**
+   * Parses the key without consulting the cache.
+   */
+  public static PrivateKey parse(String pem) {
+    try (PEMParser pemParser = new PEMParser(new StringReader(pem))) {
+      PEMKeyPair pair = (PEMKeyPair) pemParser.readObject();
+      byte[] encodedPrivateKey = pair.getPrivateKeyInfo().getEncoded();
+      KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+      PKCS8EncodedKeySpec privateKeySpec = new PKCS8EncodedKeySpec(encodedPrivateKey);
+      return keyFactory.generatePrivate(privateKeySpec);
+    } catch(IOException e) {
+      throw new IllegalStateException(e);
+    } catch(NoSuchAlgorithmException | InvalidKeySpecException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+}
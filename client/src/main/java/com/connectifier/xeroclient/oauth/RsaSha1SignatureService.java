@@ -0,0 +1,55 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.oauth;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+
+import org.scribe.exceptions.OAuthSignatureException;
+import org.scribe.services.SignatureService;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * RSA-SHA1 signing that keeps an initialized {@link Signature} per thread instead of looking
+ * one up and initializing it with the key for every request. Produces the same signatures
+ * as Scribe's RSASha1SignatureService.
+ */
+public class RsaSha1SignatureService implements SignatureService {
+
+  private static final String METHOD = "RSA-SHA1";
+  private static final String ALGORITHM = "SHA1withRSA";
+
+  private final PrivateKey privateKey;
+  private final ThreadLocal<Signature> signatures = new ThreadLocal<>();
+
+  public RsaSha1SignatureService(PrivateKey privateKey) {
+    this.privateKey = privateKey;
+  }
+
+  @Override
+  public String getSignature(String baseString, String apiSecret, String tokenSecret) {
+    try {
+      Signature signature = signatures.get();
+      if (signature == null) {
+        signature = Signature.getInstance(ALGORITHM);
+        signature.initSign(privateKey);
+        signatures.set(signature);
+      }
+      // sign() resets the Signature, leaving it ready for the next base string
+      signature.update(baseString.getBytes(Charsets.UTF_8));
+      return BaseEncoding.base64().encode(signature.sign());
+    } catch (GeneralSecurityException e) {
+      signatures.remove();
+      throw new OAuthSignatureException(baseString, e);
+    }
+  }
+
+  @Override
+  public String getSignatureMethod() {
+    return METHOD;
+  }
+
+}
@@ -0,0 +1,21 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.sync;
+
+/**
+ * Persists sync progress, such as a modified-since watermark or a journal offset, keyed by
+ * tenant and endpoint. Implementations must be thread-safe.
+ */
+public interface CheckpointStore {
+
+  /**
+   * Returns the stored checkpoint or null if there is none yet.
+   */
+  Long get(String tenant, String endPoint);
+
+  /**
+   * Stores the checkpoint. It must be durable once this method returns.
+   */
+  void put(String tenant, String endPoint, long checkpoint);
+
+}
@@ -0,0 +1,57 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Keeps checkpoints in a properties file. Every update writes a temporary file next to it
+ * and atomically moves it into place, so a crash never leaves a partially written file.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+  private final Path file;
+  private final Properties checkpoints = new Properties();
+
+  public FileCheckpointStore(Path file) {
+    this.file = file.toAbsolutePath();
+    if (Files.exists(this.file)) {
+      try (InputStream in = Files.newInputStream(this.file)) {
+        checkpoints.load(in);
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not read checkpoints from " + file, e);
+      }
+    }
+  }
+
+  protected String key(String tenant, String endPoint) {
+    return tenant + "/" + endPoint;
+  }
+
+  @Override
+  public synchronized Long get(String tenant, String endPoint) {
+    String value = checkpoints.getProperty(key(tenant, endPoint));
+    return value == null ? null : Long.valueOf(value);
+  }
+
+  @Override
+  public synchronized void put(String tenant, String endPoint, long checkpoint) {
+    checkpoints.setProperty(key(tenant, endPoint), String.valueOf(checkpoint));
+    try {
+      Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        checkpoints.store(out, null);
+      }
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not write checkpoints to " + file, e);
+    }
+  }
+
+}
@@ -0,0 +1,69 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.sync;
+
+import java.util.Iterator;
+
+import com.connectifier.xeroclient.EntityHandler;
+import com.connectifier.xeroclient.PagedIterator;
+import com.connectifier.xeroclient.XeroClient;
+import com.connectifier.xeroclient.models.Journal;
+
+/**
+ * Replays every journal of a tenant in JournalNumber order, resuming where the last replay
+ * stopped.
+ *
+ * Pages are fetched and unmarshalled ahead on the client's executor while the handler works
+ * through earlier ones on the calling thread. The number of the last handled journal is
+ * stored as the offset checkpoint after each page, and when the replay ends or fails.
+ */
+public class JournalReplay {
+
+  public static final String END_POINT = "Journals";
+  public static final int DEFAULT_PREFETCH = 2;
+
+  protected final XeroClient client;
+  protected final String tenant;
+  protected final CheckpointStore checkpoints;
+  protected int prefetch = DEFAULT_PREFETCH;
+
+  public JournalReplay(XeroClient client, String tenant, CheckpointStore checkpoints) {
+    this.client = client;
+    this.tenant = tenant;
+    this.checkpoints = checkpoints;
+  }
+
+  public void setPrefetch(int prefetch) {
+    this.prefetch = prefetch;
+  }
+
+  /**
+   * Hands every journal after the stored offset to the handler and returns how many there were.
+   */
+  public long replay(EntityHandler<? super Journal> handler) {
+    Long offset = checkpoints.get(tenant, END_POINT);
+    Iterator<Journal> journals = journals(offset == null ? 0 : offset);
+    Long handled = offset;
+    long count = 0;
+    try {
+      while (journals.hasNext()) {
+        Journal journal = journals.next();
+        handler.handle(journal);
+        handled = XeroClient.journalNumber(journal);
+        if (++count % PagedIterator.PAGE_SIZE == 0) {
+          checkpoints.put(tenant, END_POINT, handled);
+        }
+      }
+    } finally {
+      if (handled != null && count % PagedIterator.PAGE_SIZE != 0) {
+        checkpoints.put(tenant, END_POINT, handled);
+      }
+    }
+    return count;
+  }
+
+  protected Iterator<Journal> journals(long offset) {
+    return client.iterateJournals(null, (int) offset, null, null, prefetch);
+  }
+
+}
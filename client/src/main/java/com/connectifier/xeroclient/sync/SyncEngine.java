@@ -0,0 +1,148 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.sync;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.connectifier.xeroclient.EntityHandler;
+import com.connectifier.xeroclient.PagedIterator;
+import com.connectifier.xeroclient.XeroClient;
+import com.connectifier.xeroclient.models.BankTransaction;
+import com.connectifier.xeroclient.models.Contact;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.Payment;
+
+/**
+ * Pulls only what changed since the last sync of each endpoint, using the If-Modified-Since
+ * header and a watermark persisted per tenant and endpoint.
+ *
+ * Changes are requested in UpdatedDateUTC order and the watermark is advanced after each page
+ * has been handled, so a failed sync resumes from the last completed page. The watermark is
+ * taken from Xero's own timestamps and each request reaches back by a clock skew allowance,
+ * so entities near a page boundary can be delivered more than once and handlers should be
+ * idempotent.
+ */
+public class SyncEngine {
+
+  public static final long DEFAULT_CLOCK_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  protected static final String ORDER = "UpdatedDateUTC ASC";
+
+  protected final XeroClient client;
+  protected final String tenant;
+  protected final CheckpointStore checkpoints;
+  protected long clockSkewMillis = DEFAULT_CLOCK_SKEW_MILLIS;
+
+  public SyncEngine(XeroClient client, String tenant, CheckpointStore checkpoints) {
+    this.client = client;
+    this.tenant = tenant;
+    this.checkpoints = checkpoints;
+  }
+
+  public void setClockSkewMillis(long clockSkewMillis) {
+    this.clockSkewMillis = clockSkewMillis;
+  }
+
+  public int syncInvoices(EntityHandler<? super Invoice> handler) {
+    return sync(new Endpoint<Invoice>("Invoices", true) {
+      @Override
+      protected List<Invoice> fetch(Date modifiedAfter, int page) {
+        return client.getInvoices(modifiedAfter, null, ORDER, page);
+      }
+
+      @Override
+      protected Date getUpdatedDate(Invoice invoice) {
+        return invoice.getUpdatedDateUTC();
+      }
+    }, handler);
+  }
+
+  public int syncContacts(EntityHandler<? super Contact> handler) {
+    return sync(new Endpoint<Contact>("Contacts", true) {
+      @Override
+      protected List<Contact> fetch(Date modifiedAfter, int page) {
+        return client.getContacts(modifiedAfter, null, ORDER, page, true);
+      }
+
+      @Override
+      protected Date getUpdatedDate(Contact contact) {
+        return contact.getUpdatedDateUTC();
+      }
+    }, handler);
+  }
+
+  public int syncBankTransactions(EntityHandler<? super BankTransaction> handler) {
+    return sync(new Endpoint<BankTransaction>("BankTransactions", false) {
+      @Override
+      protected List<BankTransaction> fetch(Date modifiedAfter, int page) {
+        return client.getBankTransactions(modifiedAfter, null, ORDER);
+      }
+
+      @Override
+      protected Date getUpdatedDate(BankTransaction bankTransaction) {
+        return bankTransaction.getUpdatedDateUTC();
+      }
+    }, handler);
+  }
+
+  public int syncPayments(EntityHandler<? super Payment> handler) {
+    return sync(new Endpoint<Payment>("Payments", false) {
+      @Override
+      protected List<Payment> fetch(Date modifiedAfter, int page) {
+        return client.getPayments(modifiedAfter, null, ORDER);
+      }
+
+      @Override
+      protected Date getUpdatedDate(Payment payment) {
+        return payment.getUpdatedDateUTC();
+      }
+    }, handler);
+  }
+
+  /**
+   * Handles every entity changed since the endpoint's watermark and returns how many there were.
+   */
+  protected <T> int sync(Endpoint<T> endpoint, EntityHandler<? super T> handler) {
+    Long watermark = checkpoints.get(tenant, endpoint.name);
+    Date modifiedAfter = watermark == null ? null : new Date(Math.max(0, watermark - clockSkewMillis));
+    int count = 0;
+    for (int page = 1; ; page++) {
+      List<T> entities = endpoint.fetch(modifiedAfter, page);
+      Long pageWatermark = watermark;
+      for (T entity : entities) {
+        handler.handle(entity);
+        Date updated = endpoint.getUpdatedDate(entity);
+        if (updated != null && (pageWatermark == null || updated.getTime() > pageWatermark)) {
+          pageWatermark = updated.getTime();
+        }
+      }
+      count += entities.size();
+      if (pageWatermark != null && !pageWatermark.equals(watermark)) {
+        checkpoints.put(tenant, endpoint.name, pageWatermark);
+        watermark = pageWatermark;
+      }
+      if (!endpoint.paged || entities.size() < PagedIterator.PAGE_SIZE) {
+        return count;
+      }
+    }
+  }
+
+  /**
+   * An endpoint that supports If-Modified-Since. Unpaged endpoints return every change in one response.
+   */
+  protected abstract static class Endpoint<T> {
+    final String name;
+    final boolean paged;
+
+    protected Endpoint(String name, boolean paged) {
+      this.name = name;
+      this.paged = paged;
+    }
+
+    protected abstract List<T> fetch(Date modifiedAfter, int page);
+
+    protected abstract Date getUpdatedDate(T entity);
+  }
+
+}
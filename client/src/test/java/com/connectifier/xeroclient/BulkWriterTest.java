@@ -0,0 +1,184 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.scribe.model.OAuthRequest;
+
+import com.connectifier.xeroclient.http.XeroHttpResponse;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.ValidationError;
+
+public class BulkWriterTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testResultsFollowInputOrder() {
+    BulkWriter writer = new BulkWriter(null, executor, 3, 4);
+    BulkResult<Invoice> result = writer.write(invoices(10), new EchoOperation(-1));
+
+    Assert.assertEquals(4, result.getChunks().size());
+    List<BulkResult.Item<Invoice>> items = result.getItems();
+    Assert.assertEquals(10, items.size());
+    for (int i = 0; i < items.size(); i++) {
+      Assert.assertEquals(i, items.get(i).getIndex());
+      Assert.assertEquals("INV-" + i, items.get(i).getResult().getInvoiceNumber());
+    }
+    Assert.assertFalse(result.isSuccess());
+    Assert.assertEquals("Bad INV-7", items.get(7).getValidationErrors().get(0));
+    Assert.assertTrue(items.get(6).isSuccess());
+  }
+
+  @Test
+  public void testRetriesOnlyFailedChunks() {
+    BulkWriter writer = new BulkWriter(null, executor, 3, 2);
+    EchoOperation operation = new EchoOperation(1);
+    BulkResult<Invoice> result = writer.write(invoices(7), operation);
+
+    Assert.assertEquals(1, result.getFailedChunks().size());
+    Assert.assertEquals(3, result.getFailedChunks().get(0).getOffset());
+    Assert.assertNotNull(result.getItems().get(4).getFailure());
+
+    writer.retryFailed(result);
+    Assert.assertTrue(result.getFailedChunks().isEmpty());
+    Assert.assertEquals("INV-4", result.getItems().get(4).getResult().getInvoiceNumber());
+    Assert.assertEquals(4, operation.calls);
+    // the retry is sent with the key of the failed attempt, so Xero can tell it's a replay
+    Assert.assertEquals(4, operation.keys.size());
+    Assert.assertEquals(3, new HashSet<>(operation.keys).size());
+    Assert.assertEquals(operation.failedKey, operation.keys.get(3));
+    Assert.assertEquals(operation.failedKey, result.getChunks().get(1).getIdempotencyKey());
+  }
+
+  @Test
+  public void testChunksBoundedByBytes() {
+    BulkWriter writer = new BulkWriter(null, executor, 50, 100, 2);
+    EchoOperation operation = new EchoOperation(-1) {
+      @Override
+      public long getPayloadBytes(Invoice invoice) {
+        // INV-3 is larger than the limit on its own
+        return invoice.getInvoiceNumber().equals("INV-3") ? 150 : 40;
+      }
+    };
+    BulkResult<Invoice> result = writer.write(invoices(6), operation);
+
+    List<Integer> offsets = new ArrayList<>();
+    for (BulkResult.Chunk<Invoice> chunk : result.getChunks()) {
+      offsets.add(chunk.getOffset());
+    }
+    Assert.assertEquals(Arrays.asList(0, 2, 3, 4), offsets);
+    Assert.assertEquals(1, result.getChunks().get(2).getInputs().size());
+    Assert.assertEquals(2, result.getChunks().get(3).getInputs().size());
+    Assert.assertEquals(6, result.getItems().size());
+  }
+
+  @Test
+  public void testMeasuresOnlyWithByteLimit() {
+    BulkWriter writer = new BulkWriter(null, executor, 3, 2);
+    EchoOperation operation = new EchoOperation(-1) {
+      @Override
+      public long getPayloadBytes(Invoice invoice) {
+        throw new AssertionError("Measured without a byte limit");
+      }
+    };
+    Assert.assertEquals(4, writer.write(invoices(10), operation).getChunks().size());
+  }
+
+  @Test
+  public void testMeasuresMarshalledInvoices() {
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        int count = request.getBodyContents().split("InvoiceNumber", -1).length / 2;
+        StringBuilder body = new StringBuilder("<Response><Invoices>");
+        for (int i = 0; i < count; i++) {
+          body.append("<Invoice/>");
+        }
+        return response(200, body.append("</Invoices></Response>").toString());
+      }
+    };
+    XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), "key", "secret"), transport);
+    long bytes = new BulkWriter(client).payloadBytes(client.wrapInvoices(invoices(1)));
+    Assert.assertTrue(bytes > "<Invoice><InvoiceNumber>INV-0</InvoiceNumber></Invoice>".length());
+
+    // room for two invoices per chunk
+    BulkWriter writer = new BulkWriter(client, executor, 50, 2 * bytes, 1);
+    BulkResult<Invoice> result = writer.createInvoices(invoices(3));
+    Assert.assertEquals(2, result.getChunks().size());
+    Assert.assertEquals(2, transport.requests.size());
+    Assert.assertTrue(result.getFailedChunks().isEmpty());
+    Assert.assertEquals(result.getChunks().get(0).getIdempotencyKey(),
+        transport.requests.get(0).getHeaders().get(XeroClient.IDEMPOTENCY_KEY_HEADER));
+  }
+
+  private static List<Invoice> invoices(int count) {
+    List<Invoice> invoices = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Invoice invoice = new Invoice();
+      invoice.setInvoiceNumber("INV-" + i);
+      invoices.add(invoice);
+    }
+    return invoices;
+  }
+
+  /**
+   * Returns copies of the inputs, flagging INV-7 as invalid and failing the chunk with the
+   * given index on its first attempt.
+   */
+  private static class EchoOperation extends BulkWriter.Operation<Invoice> {
+    private final int failingChunk;
+    private boolean failed;
+    int calls;
+    final List<String> keys = new ArrayList<>();
+    String failedKey;
+
+    EchoOperation(int failingChunk) {
+      this.failingChunk = failingChunk;
+    }
+
+    @Override
+    public synchronized List<Invoice> write(List<Invoice> chunk, String idempotencyKey) {
+      calls++;
+      keys.add(idempotencyKey);
+      if (!failed && chunk.get(0).getInvoiceNumber().equals("INV-" + failingChunk * 3)) {
+        failed = true;
+        failedKey = idempotencyKey;
+        throw new IllegalStateException("Connection reset");
+      }
+      List<Invoice> results = new ArrayList<>();
+      for (Invoice input : chunk) {
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceNumber(input.getInvoiceNumber());
+        if (input.getInvoiceNumber().equals("INV-7")) {
+          ValidationError error = new ValidationError();
+          error.setMessage("Bad INV-7");
+          invoice.setValidationErrors(Collections.singletonList(error));
+        }
+        results.add(invoice);
+      }
+      return results;
+    }
+
+    @Override
+    public List<ValidationError> getValidationErrors(Invoice invoice) {
+      return invoice.getValidationErrors();
+    }
+  }
+
+}
@@ -0,0 +1,182 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.scribe.model.OAuthRequest;
+
+import com.connectifier.xeroclient.http.XeroHttpResponse;
+import com.connectifier.xeroclient.models.Account;
+import com.connectifier.xeroclient.models.Contact;
+import com.connectifier.xeroclient.models.Invoice;
+
+public class CachingXeroClientTest {
+
+  private static final String ACCOUNTS = "<Response><Accounts><Account><Code>200</Code></Account></Accounts></Response>";
+  private static final String CONTACTS = "<Response><Contacts>"
+      + "<Contact><ContactID>c1</ContactID><Name>One</Name></Contact>"
+      + "<Contact><ContactID>c2</ContactID><Name>Two</Name></Contact>"
+      + "</Contacts></Response>";
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentCallersShareOneFetch() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return response(200, ACCOUNTS);
+      }
+    };
+    final CachingXeroClient client = FakeTransport.install(
+        new CachingXeroClient(FakeTransport.pem(), "key", "secret"), transport);
+
+    List<Future<List<Account>>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(executor.submit(new Callable<List<Account>>() {
+        @Override
+        public List<Account> call() {
+          return client.getAccounts();
+        }
+      }));
+    }
+    Thread.sleep(100);
+    release.countDown();
+    for (Future<List<Account>> future : futures) {
+      Assert.assertEquals("200", future.get().get(0).getCode());
+    }
+    Assert.assertEquals(1, transport.requests.size());
+  }
+
+  @Test
+  public void testWritesInvalidate() {
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        if (request.getUrl().endsWith("Accounts")) {
+          return response(200, ACCOUNTS);
+        }
+        return response(200, "<Response><Invoices><Invoice><InvoiceID>i1</InvoiceID></Invoice></Invoices></Response>");
+      }
+    };
+    CachingXeroClient client = FakeTransport.install(
+        new CachingXeroClient(FakeTransport.pem(), "key", "secret"), transport);
+
+    client.getInvoice("i1");
+    client.getInvoice("i1");
+    Assert.assertEquals(1, transport.requests.size());
+    Invoice invoice = new Invoice();
+    invoice.setInvoiceID("i1");
+    client.updateInvoices(Collections.singletonList(invoice));
+    Assert.assertEquals(2, transport.requests.size());
+    client.getInvoice("i1");
+    Assert.assertEquals(3, transport.requests.size());
+    Assert.assertTrue(transport.requests.get(2).getUrl().endsWith("Invoices/i1"));
+
+    client.getAccounts();
+    client.getAccounts();
+    Assert.assertEquals(4, transport.requests.size());
+    client.invalidate("Accounts/297c2dc5-cc47-4afd-8ec8-74990b8761e9");
+    client.getAccounts();
+    Assert.assertEquals(5, transport.requests.size());
+  }
+
+  @Test
+  public void testRefreshRevalidatesAccounts() throws Exception {
+    final List<String> modifiedSince = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch responded = new CountDownLatch(2);
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        String header = request.getHeaders().get("If-Modified-Since");
+        modifiedSince.add(header);
+        responded.countDown();
+        return header == null ? response(200, ACCOUNTS) : response(304, "");
+      }
+    };
+    CachingXeroClient client = FakeTransport.install(
+        new CachingXeroClient(FakeTransport.pem(), "key", "secret", TimeUnit.HOURS.toMillis(1), 1, 10), transport);
+    client.setExecutor(executor);
+
+    List<Account> accounts = client.getAccounts();
+    Thread.sleep(10);
+    Assert.assertSame(accounts, client.getAccounts());
+    Assert.assertTrue(responded.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(2, modifiedSince.size());
+    Assert.assertNull(modifiedSince.get(0));
+    Assert.assertNotNull(modifiedSince.get(1));
+    Assert.assertSame(accounts, client.getAccounts());
+  }
+
+  @Test
+  public void testEntityLookupsAreCoalescedAndWarmed() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        if (request.getUrl().endsWith("Contacts/c3")) {
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          return response(200, "<Response><Contacts><Contact><ContactID>c3</ContactID></Contact></Contacts></Response>");
+        }
+        if (request.getUrl().endsWith("Contacts/c2")) {
+          return response(200, "<Response><Contacts><Contact><ContactID>c2</ContactID></Contact></Contacts></Response>");
+        }
+        return response(200, CONTACTS);
+      }
+    };
+    final CachingXeroClient client = FakeTransport.install(
+        new CachingXeroClient(FakeTransport.pem(), "key", "secret"), transport);
+
+    List<Future<Contact>> futures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      futures.add(executor.submit(new Callable<Contact>() {
+        @Override
+        public Contact call() {
+          return client.getContact("c3");
+        }
+      }));
+    }
+    Thread.sleep(100);
+    release.countDown();
+    for (Future<Contact> future : futures) {
+      Assert.assertEquals("c3", future.get().getContactID());
+    }
+    Assert.assertEquals(1, transport.requests.size());
+
+    client.getContacts();
+    Assert.assertEquals("Two", client.getContact("c2").getName());
+    Assert.assertEquals(2, transport.requests.size());
+
+    client.invalidate("Contacts");
+    client.getContact("c2");
+    Assert.assertEquals(3, transport.requests.size());
+  }
+
+}
@@ -0,0 +1,142 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.scribe.model.OAuthRequest;
+
+import com.connectifier.xeroclient.http.XeroHttpResponse;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.ValidationError;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class CoalescingWriterTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSendsFullBatchImmediately() throws Exception {
+    CoalescingWriter writer = new CoalescingWriter(null, executor, TimeUnit.HOURS.toMillis(1), 3);
+    RecordingOperation operation = new RecordingOperation();
+    CoalescingWriter.Batcher<Invoice> batcher = writer.new Batcher<>(operation);
+
+    List<ListenableFuture<Invoice>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(batcher.add(invoice("INV-" + i)));
+    }
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals("INV-" + i, futures.get(i).get(5, TimeUnit.SECONDS).getInvoiceNumber());
+    }
+    Assert.assertEquals(Collections.singletonList(3), operation.batchSizes);
+    writer.close();
+  }
+
+  @Test
+  public void testSendsPartialBatchAfterLinger() throws Exception {
+    CoalescingWriter writer = new CoalescingWriter(null, executor, 10, 50);
+    RecordingOperation operation = new RecordingOperation();
+    CoalescingWriter.Batcher<Invoice> batcher = writer.new Batcher<>(operation);
+
+    ListenableFuture<Invoice> good = batcher.add(invoice("INV-1"));
+    ListenableFuture<Invoice> bad = batcher.add(invoice("BAD"));
+    Assert.assertEquals("INV-1", good.get(5, TimeUnit.SECONDS).getInvoiceNumber());
+    try {
+      bad.get(5, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof XeroApiException);
+      Assert.assertEquals("400 response: Invalid invoice number", e.getCause().getMessage());
+    }
+    Assert.assertEquals(Collections.singletonList(2), operation.batchSizes);
+    writer.close();
+  }
+
+  @Test
+  public void testFullBatchStopsLingerTimer() throws Exception {
+    CoalescingWriter writer = new CoalescingWriter(null, executor, 500, 2);
+    RecordingOperation operation = new RecordingOperation();
+    CoalescingWriter.Batcher<Invoice> batcher = writer.new Batcher<>(operation);
+
+    batcher.add(invoice("INV-1"));
+    batcher.add(invoice("INV-2")).get(5, TimeUnit.SECONDS);
+    Thread.sleep(300);
+    ListenableFuture<Invoice> next = batcher.add(invoice("INV-3"));
+    // past the linger time of the first batch, but not of the second
+    Thread.sleep(300);
+    Assert.assertFalse(next.isDone());
+    Assert.assertEquals("INV-3", next.get(5, TimeUnit.SECONDS).getInvoiceNumber());
+    Assert.assertEquals(Arrays.asList(2, 1), operation.batchSizes);
+    writer.close();
+  }
+
+  @Test
+  public void testRejectsWritesAfterClose() throws Exception {
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        return response(200, "<Response><Invoices><Invoice><InvoiceNumber>INV-1</InvoiceNumber></Invoice></Invoices></Response>");
+      }
+    };
+    XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), "key", "secret"), transport);
+    CoalescingWriter writer = new CoalescingWriter(client, executor, TimeUnit.HOURS.toMillis(1), 50);
+
+    ListenableFuture<Invoice> pending = writer.createInvoice(invoice("INV-1"));
+    writer.close();
+    Assert.assertEquals("INV-1", pending.get(5, TimeUnit.SECONDS).getInvoiceNumber());
+    try {
+      writer.createInvoice(invoice("INV-2"));
+      Assert.fail("Expected the closed writer to reject the write");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    Assert.assertEquals(1, transport.requests.size());
+  }
+
+  private static Invoice invoice(String number) {
+    Invoice invoice = new Invoice();
+    invoice.setInvoiceNumber(number);
+    return invoice;
+  }
+
+  private static class RecordingOperation extends BulkWriter.Operation<Invoice> {
+    final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Override
+    public List<Invoice> write(List<Invoice> batch, String idempotencyKey) {
+      batchSizes.add(batch.size());
+      List<Invoice> results = new ArrayList<>();
+      for (Invoice input : batch) {
+        Invoice invoice = invoice(input.getInvoiceNumber());
+        if (input.getInvoiceNumber().equals("BAD")) {
+          ValidationError error = new ValidationError();
+          error.setMessage("Invalid invoice number");
+          invoice.setValidationErrors(Collections.singletonList(error));
+        }
+        results.add(invoice);
+      }
+      return results;
+    }
+
+    @Override
+    public List<ValidationError> getValidationErrors(Invoice invoice) {
+      return invoice.getValidationErrors();
+    }
+  }
+
+}
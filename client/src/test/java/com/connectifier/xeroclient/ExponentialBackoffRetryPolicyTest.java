@@ -0,0 +1,114 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scribe.exceptions.OAuthConnectionException;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Verb;
+
+import com.google.common.collect.ImmutableMap;
+
+public class ExponentialBackoffRetryPolicyTest {
+
+  private static final XeroApiException UNAVAILABLE = new XeroApiException(503);
+
+  @Test
+  public void testRetriesGetsWithBackoff() {
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy(4, 100, 1000, 0.1, 10, new Random(0));
+    OAuthRequest request = new OAuthRequest(Verb.GET, XeroClient.BASE_URL + "Invoices");
+    for (int attempt = 1; attempt < 4; attempt++) {
+      long delay = policy.retryDelayMillis(request, attempt, UNAVAILABLE);
+      Assert.assertTrue(delay >= 0);
+      Assert.assertTrue(delay < 100 << (attempt - 1));
+    }
+    Assert.assertEquals(-1, policy.retryDelayMillis(request, 4, UNAVAILABLE));
+  }
+
+  @Test
+  public void testRetriesConnectionFailures() {
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy();
+    OAuthRequest request = new OAuthRequest(Verb.GET, XeroClient.BASE_URL + "Invoices");
+    Assert.assertTrue(policy.retryDelayMillis(request, 1, new OAuthConnectionException(new IOException())) >= 0);
+    Assert.assertEquals(-1, policy.retryDelayMillis(request, 1, new XeroApiException(400)));
+  }
+
+  @Test
+  public void testWritesNeedIdempotencyKey() {
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy();
+    OAuthRequest request = new OAuthRequest(Verb.PUT, XeroClient.BASE_URL + "Invoices");
+    Assert.assertEquals(-1, policy.retryDelayMillis(request, 1, UNAVAILABLE));
+    request.addHeader(XeroClient.IDEMPOTENCY_KEY_HEADER, "key");
+    Assert.assertTrue(policy.retryDelayMillis(request, 1, UNAVAILABLE) >= 0);
+  }
+
+  @Test
+  public void testRetryAfter() {
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy();
+    OAuthRequest request = new OAuthRequest(Verb.GET, XeroClient.BASE_URL + "Invoices");
+    XeroApiException minute = new XeroRateLimitException("rate limit exceeded", false, ImmutableMap.of("retry-after", "7"));
+    Assert.assertEquals(7000, policy.retryDelayMillis(request, 1, minute));
+    XeroApiException daily = new XeroRateLimitException("rate limit exceeded", true, ImmutableMap.of("Retry-After", "7"));
+    Assert.assertEquals(-1, policy.retryDelayMillis(request, 1, daily));
+  }
+
+  @Test
+  public void testRetryAfterLongerThanMaxDelay() {
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy(3, 500, 30000, 0.1, 1);
+    OAuthRequest request = new OAuthRequest(Verb.GET, XeroClient.BASE_URL + "Invoices");
+    XeroApiException minute = new XeroRateLimitException("rate limit exceeded", false, ImmutableMap.of("Retry-After", "60"));
+    Assert.assertEquals(-1, policy.retryDelayMillis(request, 1, minute));
+    // giving up doesn't spend the budget
+    Assert.assertTrue(policy.retryDelayMillis(request, 1, UNAVAILABLE) >= 0);
+
+    RetryPolicy patient = new ExponentialBackoffRetryPolicy(3, 500, 60000, 0.1, 10);
+    Assert.assertEquals(60000, patient.retryDelayMillis(request, 1, minute));
+  }
+
+  @Test
+  public void testBudget() {
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy(3, 1, 1, 0.5, 2);
+    OAuthRequest request = new OAuthRequest(Verb.GET, XeroClient.BASE_URL + "Invoices");
+    Assert.assertTrue(policy.retryDelayMillis(request, 1, UNAVAILABLE) >= 0);
+    Assert.assertTrue(policy.retryDelayMillis(request, 1, UNAVAILABLE) >= 0);
+    Assert.assertEquals(-1, policy.retryDelayMillis(request, 1, UNAVAILABLE));
+    policy.onSuccess();
+    policy.onSuccess();
+    Assert.assertTrue(policy.retryDelayMillis(request, 1, UNAVAILABLE) >= 0);
+  }
+
+  @Test
+  public void testFailFastClientIsNotRetried() {
+    final List<Integer> attempts = new ArrayList<>();
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy() {
+      @Override
+      public long retryDelayMillis(OAuthRequest request, int attempt, RuntimeException failure) {
+        attempts.add(attempt);
+        return super.retryDelayMillis(request, attempt, failure);
+      }
+    };
+    FakeTransport transport = new FakeTransport();
+    XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), "key", "secret"), transport);
+    client.setRateLimiter(new XeroRateLimiter("tenant", 1, 5000));
+    client.setBlockOnRateLimit(false);
+    client.setRetryPolicy(policy);
+    client.getAccounts();
+    try {
+      client.getAccounts();
+      Assert.fail("Expected the client-side limit to be reached");
+    } catch (XeroClientRateLimitException e) {
+      Assert.assertEquals(Arrays.asList(1), attempts);
+      Assert.assertEquals(1, transport.requests.size());
+    }
+    Assert.assertEquals(-1, policy.retryDelayMillis(new OAuthRequest(Verb.GET, XeroClient.BASE_URL + "Invoices"), 1,
+        new XeroClientRateLimitException("Client-side minute rate limit reached", false)));
+  }
+
+}
@@ -0,0 +1,58 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.scribe.model.OAuthRequest;
+
+import com.connectifier.xeroclient.http.XeroHttpResponse;
+import com.connectifier.xeroclient.http.XeroTransport;
+import com.connectifier.xeroclient.oauth.TestKeys;
+import com.google.common.base.Charsets;
+
+/**
+ * Records requests and answers them from {@link #respond(OAuthRequest)}, which by default
+ * returns an empty response.
+ */
+class FakeTransport implements XeroTransport {
+
+  final List<OAuthRequest> requests = Collections.synchronizedList(new ArrayList<OAuthRequest>());
+
+  /**
+   * Points the client at the given transport, with rate limiting and retries turned off.
+   */
+  static <T extends XeroClient> T install(T client, FakeTransport transport) {
+    client.setTransport(transport);
+    client.setRateLimiter(null);
+    client.setRetryPolicy(null);
+    return client;
+  }
+
+  /**
+   * A throwaway private key for constructing clients.
+   */
+  static StringReader pem() {
+    return new StringReader(TestKeys.pem());
+  }
+
+  @Override
+  public XeroHttpResponse send(OAuthRequest request) {
+    requests.add(request);
+    return respond(request);
+  }
+
+  protected XeroHttpResponse respond(OAuthRequest request) {
+    return response(200, "<Response></Response>");
+  }
+
+  static XeroHttpResponse response(int code, String body) {
+    return new XeroHttpResponse(code, Collections.<String, String>emptyMap(),
+        new ByteArrayInputStream(body.getBytes(Charsets.UTF_8)));
+  }
+
+}
@@ -0,0 +1,119 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class PagedIteratorTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testWalksEveryPage() {
+    final List<Long> fetched = new ArrayList<>();
+    Iterator<Long> iter = new PagedIterator<Long>(executor, 1, 3) {
+      @Override
+      protected List<Long> fetch(long page) {
+        synchronized (fetched) {
+          fetched.add(page);
+        }
+        return range((page - 1) * PAGE_SIZE, page < 3 ? PAGE_SIZE : 42);
+      }
+
+      @Override
+      protected long nextCursor(long page, List<Long> values) {
+        return page + 1;
+      }
+
+      @Override
+      protected long predictNextCursor(long page) {
+        return page + 1;
+      }
+    };
+    assertSequence(iter, 2 * PagedIterator.PAGE_SIZE + 42);
+    Assert.assertTrue(fetched.contains(3L));
+  }
+
+  @Test
+  public void testRefetchesWhenPredictionIsWrong() {
+    // Offsets skip number 150, so the speculative request for offset 200 is wrong
+    final List<Long> numbers = new ArrayList<>(range(1, 149));
+    numbers.addAll(range(151, 130));
+    Iterator<Long> iter = new PagedIterator<Long>(executor, 0, 2) {
+      @Override
+      protected List<Long> fetch(long offset) {
+        List<Long> page = new ArrayList<>();
+        for (Long number : numbers) {
+          if (number > offset && page.size() < PAGE_SIZE) {
+            page.add(number);
+          }
+        }
+        return page;
+      }
+
+      @Override
+      protected long nextCursor(long offset, List<Long> page) {
+        return page.get(page.size() - 1);
+      }
+
+      @Override
+      protected long predictNextCursor(long offset) {
+        return offset + PAGE_SIZE;
+      }
+    };
+    List<Long> result = ImmutableList.copyOf(iter);
+    Assert.assertEquals(numbers, result);
+  }
+
+  @Test
+  public void testEmpty() {
+    Iterator<Long> iter = new PagedIterator<Long>(executor, 1, 2) {
+      @Override
+      protected List<Long> fetch(long page) {
+        return ImmutableList.of();
+      }
+
+      @Override
+      protected long nextCursor(long page, List<Long> values) {
+        return page + 1;
+      }
+
+      @Override
+      protected long predictNextCursor(long page) {
+        return page + 1;
+      }
+    };
+    Assert.assertFalse(iter.hasNext());
+  }
+
+  private static List<Long> range(long start, long count) {
+    List<Long> values = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      values.add(start + i);
+    }
+    return values;
+  }
+
+  private static void assertSequence(Iterator<Long> iter, long count) {
+    for (long i = 0; i < count; i++) {
+      Assert.assertEquals(Long.valueOf(i), iter.next());
+    }
+    Assert.assertFalse(iter.hasNext());
+  }
+
+}
@@ -0,0 +1,66 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scribe.model.OAuthRequest;
+
+import com.codahale.metrics.MetricRegistry;
+import com.connectifier.xeroclient.http.XeroHttpResponse;
+import com.connectifier.xeroclient.metrics.DropwizardInstrumentation;
+import com.connectifier.xeroclient.models.Invoice;
+
+public class XeroClientInstrumentationTest {
+
+  private static final String INVOICES = "<Response><Invoices>"
+      + "<Invoice><InvoiceNumber>INV-1</InvoiceNumber></Invoice>"
+      + "<Invoice><InvoiceNumber>INV-2</InvoiceNumber></Invoice>"
+      + "</Invoices></Response>";
+
+  @Test
+  public void testRecordsPhasesSizesAndErrors() {
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        if (request.getUrl().endsWith("Invoices/missing")) {
+          return response(404, "The resource you're looking for cannot be found");
+        }
+        return response(200, INVOICES);
+      }
+    };
+    XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), "tenant", "secret"), transport);
+    MetricRegistry registry = new MetricRegistry();
+    client.setInstrumentation(new DropwizardInstrumentation(registry));
+
+    Invoice invoice = new Invoice();
+    invoice.setReference("Caf\u00e9");
+    client.getInvoices();
+    client.createInvoices(Collections.singletonList(invoice));
+    try {
+      client.getInvoice("missing");
+      Assert.fail();
+    } catch (XeroApiException expected) {
+    }
+    client.streamInvoices(null, null, null, null, new EntityHandler<Invoice>() {
+      @Override
+      public void handle(Invoice invoice) {
+      }
+    });
+
+    Assert.assertEquals(4, registry.timer("xero.tenant.Invoices.sign").getCount());
+    Assert.assertEquals(4, registry.timer("xero.tenant.Invoices.network").getCount());
+    Assert.assertEquals(3, registry.timer("xero.tenant.Invoices.unmarshal").getCount());
+    Assert.assertEquals(2, registry.histogram("xero.tenant.Invoices.entities").getSnapshot().getMax());
+    Assert.assertEquals(INVOICES.length(), registry.histogram("xero.tenant.Invoices.bytes-in").getSnapshot().getMax());
+    String body = client.marshallRequest(client.wrapInvoices(Collections.singletonList(invoice)));
+    Assert.assertEquals(body.getBytes(StandardCharsets.UTF_8).length,
+        registry.histogram("xero.tenant.Invoices.bytes-out").getSnapshot().getMax());
+    Assert.assertEquals(0, registry.histogram("xero.tenant.Invoices.bytes-out").getSnapshot().getMin());
+    Assert.assertEquals(1, registry.meter("xero.tenant.Invoices.errors.404").getCount());
+  }
+
+}
@@ -0,0 +1,157 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.connectifier.xeroclient.http.XeroTransport;
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class XeroClientPoolTest {
+
+  private final FakeTransport transport = new FakeTransport();
+  private final AtomicInteger created = new AtomicInteger();
+  private final FakeTicker ticker = new FakeTicker();
+  private XeroClientPool pool;
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void testWeightedRoundRobin() throws Exception {
+    pool = newPool(1);
+    pool.setWeight("big", 2);
+    final CountDownLatch gate = new CountDownLatch(1);
+    pool.submit("gate", new Function<XeroClient, Void>() {
+      @Override
+      public Void apply(XeroClient client) {
+        await(gate);
+        return null;
+      }
+    });
+    final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+    List<ListenableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(pool.submit("big", record(order, "big")));
+    }
+    for (int i = 0; i < 2; i++) {
+      futures.add(pool.submit("small", record(order, "small")));
+    }
+    Assert.assertEquals(Integer.valueOf(6), pool.getQueueDepths().get("big"));
+    Assert.assertEquals(2, pool.getQueueDepth("small"));
+
+    gate.countDown();
+    for (ListenableFuture<String> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+    Assert.assertEquals("big,big,small,big,big,small,big,big", Joiner.on(',').join(order));
+    Assert.assertEquals(0, pool.getQueueDepth("big"));
+  }
+
+  @Test
+  public void testSharesTransportAndEvictsIdleTenants() throws Exception {
+    pool = newPool(2);
+    Function<XeroClient, XeroTransport> transportOf = new Function<XeroClient, XeroTransport>() {
+      @Override
+      public XeroTransport apply(XeroClient client) {
+        client.getAccounts();
+        return client.transport;
+      }
+    };
+    Assert.assertSame(transport, pool.submit("a", transportOf).get(5, TimeUnit.SECONDS));
+    Assert.assertSame(transport, pool.submit("b", transportOf).get(5, TimeUnit.SECONDS));
+    pool.submit("a", transportOf).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(2, created.get());
+    Assert.assertEquals(3, transport.requests.size());
+
+    ticker.advance(TimeUnit.MINUTES.toNanos(11));
+    pool.evictIdle();
+    Assert.assertTrue(pool.getQueueDepths().isEmpty());
+    pool.submit("a", transportOf).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(3, created.get());
+  }
+
+  @Test
+  public void testRateLimitedTenantDoesNotHoldWorker() throws Exception {
+    final XeroRateLimiter limiter = new XeroRateLimiter("limited", 1, 5000);
+    pool = new XeroClientPool(new Function<String, XeroClient>() {
+      @Override
+      public XeroClient apply(String tenant) {
+        XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), tenant, "secret"), transport);
+        if (tenant.equals("limited")) {
+          client.setRateLimiter(limiter);
+        }
+        return client;
+      }
+    }, transport, 1, TimeUnit.MINUTES.toMillis(10), ticker);
+    Function<XeroClient, Integer> getAccounts = new Function<XeroClient, Integer>() {
+      @Override
+      public Integer apply(XeroClient client) {
+        return client.getAccounts().size();
+      }
+    };
+    pool.submit("limited", getAccounts).get(5, TimeUnit.SECONDS);
+    // the limiter has no permit for another minute
+    ListenableFuture<Integer> limited = pool.submit("limited", getAccounts);
+    Assert.assertEquals(Integer.valueOf(0), pool.submit("other", getAccounts).get(5, TimeUnit.SECONDS));
+    Assert.assertFalse(limited.isDone());
+    Assert.assertEquals(1, pool.getQueueDepth("limited"));
+    Assert.assertEquals(2, transport.requests.size());
+  }
+
+  private XeroClientPool newPool(int workers) {
+    return new XeroClientPool(new Function<String, XeroClient>() {
+      @Override
+      public XeroClient apply(String tenant) {
+        created.incrementAndGet();
+        return FakeTransport.install(new XeroClient(FakeTransport.pem(), tenant, "secret"), transport);
+      }
+    }, transport, workers, TimeUnit.MINUTES.toMillis(10), ticker);
+  }
+
+  private static Function<XeroClient, String> record(final List<String> order, final String tenant) {
+    return new Function<XeroClient, String>() {
+      @Override
+      public String apply(XeroClient client) {
+        order.add(tenant);
+        return tenant;
+      }
+    };
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class FakeTicker extends Ticker {
+    private volatile long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long delta) {
+      nanos += delta;
+    }
+  }
+
+}
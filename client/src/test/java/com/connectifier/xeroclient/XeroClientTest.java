@@ -2,14 +2,32 @@
 
 package com.connectifier.xeroclient;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.scribe.model.OAuthRequest;
 
+import com.connectifier.xeroclient.http.XeroHttpResponse;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.Journal;
 import com.connectifier.xeroclient.models.ResponseType;
 import com.google.common.base.Charsets;
 import com.google.common.io.CharStreams;
@@ -19,7 +37,7 @@ public class XeroClientTest {
   @Test
   public void testDateFormatting() {
     Date date = new Date(1396719320939l);
-    Assert.assertEquals("2014-04-05T17:35:20", XeroClient.utcFormatter.format(date));
+    Assert.assertEquals("2014-04-05T17:35:20", XeroClient.formatUtc(date));
   }
 
   @Test
@@ -29,6 +47,27 @@ public class XeroClientTest {
     Assert.assertNotNull(response);
   }
 
+  @Test
+  public void testUnmarshalling_stream() {
+    InputStream is = XeroClientTest.class.getClassLoader().getResourceAsStream("create-invoice-response.xml");
+    ResponseType response = XeroClient.unmarshallResponse(is, ResponseType.class);
+    Assert.assertEquals("INV-0058", response.getInvoices().get(0).getInvoiceNumber());
+  }
+
+  @Test
+  public void testUnmarshalling_streamErrorIsBounded() {
+    StringBuilder xml = new StringBuilder("<Response><Id>");
+    for (int i = 0; i < 10000; i++) {
+      xml.append('x');
+    }
+    try {
+      XeroClient.unmarshallResponse(new ByteArrayInputStream(xml.toString().getBytes(Charsets.UTF_8)), ResponseType.class);
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().length() < XeroClient.MAX_ERROR_BODY_LENGTH + 100);
+    }
+  }
+
   private String getResourceAsString(String resource) {
     try (InputStream is = XeroClientTest.class.getClassLoader().getResourceAsStream(resource)) {
       return CharStreams.toString(new InputStreamReader(is, Charsets.UTF_8));
@@ -37,4 +76,120 @@ public class XeroClientTest {
     }
   }
 
+  @Test
+  public void testGetInvoicesByIds() {
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        StringBuilder xml = new StringBuilder("<Response><Invoices>");
+        Matcher matcher = Pattern.compile("IDs=([^&]*)").matcher(request.getCompleteUrl());
+        matcher.find();
+        for (String id : matcher.group(1).split("%2C")) {
+          if (!id.startsWith("missing")) {
+            xml.append("<Invoice><InvoiceID>").append(id).append("</InvoiceID></Invoice>");
+          }
+        }
+        return response(200, xml.append("</Invoices></Response>").toString());
+      }
+    };
+    XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), "key", "secret"), transport);
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 90; i++) {
+      ids.add("id" + i);
+    }
+    ids.add("missing");
+    ids.add("id0");
+
+    Map<String, Invoice> invoices = client.getInvoices(ids);
+    Assert.assertEquals(3, transport.requests.size());
+    Assert.assertEquals(90, invoices.size());
+    Assert.assertEquals("id42", invoices.get("id42").getInvoiceID());
+    Assert.assertFalse(invoices.containsKey("missing"));
+    Assert.assertTrue(transport.requests.get(0).getCompleteUrl().contains("page=1"));
+  }
+
+  @Test
+  public void testGetInvoiceSummaries() {
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        return response(200, "<Response><Invoices><Invoice><InvoiceNumber>INV-1</InvoiceNumber>"
+            + "<LineItems><LineItem><Description>Widget</Description></LineItem></LineItems>"
+            + "</Invoice></Invoices></Response>");
+      }
+    };
+    XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), "key", "secret"), transport);
+    List<Invoice> invoices = client.getInvoiceSummaries(null, null, null, 1);
+    Assert.assertEquals("INV-1", invoices.get(0).getInvoiceNumber());
+    Assert.assertTrue(invoices.get(0).getLineItems().isEmpty());
+    Assert.assertEquals(1, client.getInvoices(null, null, null, 1).get(0).getLineItems().size());
+  }
+
+  @Test
+  public void testStreamClosesResponseWhenParsingCannotStart() {
+    final AtomicBoolean closed = new AtomicBoolean();
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        byte[] body = "<?xml version=\"9\"?><Response/>".getBytes(Charsets.UTF_8);
+        return new XeroHttpResponse(200, Collections.<String, String>emptyMap(), new ByteArrayInputStream(body) {
+          @Override
+          public void close() {
+            closed.set(true);
+          }
+        });
+      }
+    };
+    XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), "key", "secret"), transport);
+    try {
+      client.streamJournals(null, null, null, null, new EntityHandler<Journal>() {
+        @Override
+        public void handle(Journal journal) {
+        }
+      });
+      Assert.fail("Expected the bad prolog to be rejected");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(closed.get());
+    }
+  }
+
+  @Test
+  public void testSharedClientUnderConcurrency() throws Exception {
+    FakeTransport transport = new FakeTransport() {
+      @Override
+      protected XeroHttpResponse respond(OAuthRequest request) {
+        String since = request.getHeaders().get("If-Modified-Since");
+        return response(200, "<Response><Invoices><Invoice><InvoiceNumber>" + since
+            + "</InvoiceNumber></Invoice></Invoices></Response>");
+      }
+    };
+    final XeroClient client = FakeTransport.install(new XeroClient(FakeTransport.pem(), "key", "secret"), transport);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < 16; t++) {
+        final long start = 1396719320000L + t * 86400000L * 31;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            for (int i = 0; i < 200; i++) {
+              Date since = new Date(start + i * 3601000L);
+              List<Invoice> invoices = client.getInvoices(since, null, null, null);
+              Assert.assertEquals(format.format(since), invoices.get(0).getInvoiceNumber());
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(16 * 200, transport.requests.size());
+  }
+
 }
@@ -0,0 +1,121 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+public class XeroRateLimiterTest {
+
+  @Test
+  public void testMinuteWindow() {
+    FakeTicker ticker = new FakeTicker();
+    XeroRateLimiter limiter = new XeroRateLimiter("tenant", 60, 5000, ticker);
+    for (int i = 0; i < 60; i++) {
+      Assert.assertTrue(limiter.tryAcquire());
+    }
+    Assert.assertFalse(limiter.tryAcquire());
+    Assert.assertFalse(limiter.isDailyLimitReached());
+    ticker.advance(59, TimeUnit.SECONDS);
+    Assert.assertFalse(limiter.tryAcquire());
+    ticker.advance(1, TimeUnit.SECONDS);
+    Assert.assertTrue(limiter.tryAcquire());
+  }
+
+  @Test
+  public void testNoMinuteExceedsTheLimit() {
+    FakeTicker ticker = new FakeTicker();
+    XeroRateLimiter limiter = new XeroRateLimiter("tenant", 60, 5000, ticker);
+    List<Long> granted = new ArrayList<>();
+    // a call every 100ms for three minutes
+    for (int i = 0; i < 1800; i++) {
+      if (limiter.tryAcquire()) {
+        granted.add(ticker.read());
+      }
+      ticker.advance(100, TimeUnit.MILLISECONDS);
+    }
+    int firstMinute = 0;
+    for (long time : granted) {
+      if (time < TimeUnit.MINUTES.toNanos(1)) {
+        firstMinute++;
+      }
+    }
+    Assert.assertEquals(60, firstMinute);
+    for (int i = 60; i < granted.size(); i++) {
+      Assert.assertTrue(granted.get(i) - granted.get(i - 60) >= TimeUnit.MINUTES.toNanos(1));
+    }
+  }
+
+  @Test
+  public void testNoDayExceedsTheLimit() {
+    FakeTicker ticker = new FakeTicker();
+    XeroRateLimiter limiter = new XeroRateLimiter("tenant", 60, 5000, ticker);
+    int granted = 0;
+    for (int i = 0; i < 86400; i++) {
+      if (limiter.tryAcquire()) {
+        granted++;
+      }
+      ticker.advance(1, TimeUnit.SECONDS);
+    }
+    Assert.assertEquals(5000, granted);
+  }
+
+  @Test
+  public void testDayWindow() {
+    FakeTicker ticker = new FakeTicker();
+    XeroRateLimiter limiter = new XeroRateLimiter("tenant", 60, 100, ticker);
+    for (int i = 0; i < 100; i++) {
+      ticker.advance(1, TimeUnit.SECONDS);
+      Assert.assertTrue(limiter.tryAcquire());
+    }
+    ticker.advance(1, TimeUnit.MINUTES);
+    Assert.assertFalse(limiter.tryAcquire());
+    Assert.assertTrue(limiter.isDailyLimitReached());
+  }
+
+  @Test
+  public void testOnLimitExceeded() {
+    FakeTicker ticker = new FakeTicker();
+    XeroRateLimiter limiter = new XeroRateLimiter("tenant", 60, 5000, ticker);
+    limiter.onLimitExceeded(false);
+    Assert.assertFalse(limiter.tryAcquire());
+    ticker.advance(1, TimeUnit.SECONDS);
+    Assert.assertTrue(limiter.tryAcquire());
+  }
+
+  @Test
+  public void testAcquireBlocks() {
+    XeroRateLimiter limiter = new XeroRateLimiter("tenant", 600, 5000);
+    // the next permit is then 100ms away
+    limiter.onLimitExceeded(false);
+    long start = System.nanoTime();
+    limiter.acquire();
+    Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void testSharedByTenant() {
+    Assert.assertSame(XeroRateLimiter.forTenant("a"), XeroRateLimiter.forTenant("a"));
+    Assert.assertNotSame(XeroRateLimiter.forTenant("a"), XeroRateLimiter.forTenant("b"));
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+
+}
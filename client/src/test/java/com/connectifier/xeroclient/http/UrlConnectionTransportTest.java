@@ -0,0 +1,86 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Verb;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class UrlConnectionTransportTest {
+
+  private HttpServer server;
+  private String url;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String requestBody;
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), Charsets.UTF_8)) {
+          requestBody = CharStreams.toString(reader);
+        }
+        byte[] body = ("<Response>" + exchange.getRequestMethod() + " " + requestBody + "</Response>").getBytes(Charsets.UTF_8);
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+          ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+          try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(body);
+          }
+          body = gzipped.toByteArray();
+          exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(exchange.getRequestURI().getPath().contains("missing") ? 404 : 200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    });
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/";
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testGzippedBody() throws IOException {
+    OAuthRequest request = new OAuthRequest(Verb.PUT, url + "Invoices");
+    request.setCharset("UTF-8");
+    request.addBodyParameter("xml", "<Invoice />");
+    try (XeroHttpResponse response = new UrlConnectionTransport().send(request)) {
+      Assert.assertEquals(200, response.getCode());
+      Assert.assertEquals("gzip", response.getHeader("content-encoding"));
+      Assert.assertEquals("<Response>PUT xml=%3CInvoice%20%2F%3E</Response>", response.getBody());
+    }
+  }
+
+  @Test
+  public void testConnectionsAreReleased() throws IOException {
+    UrlConnectionTransport transport = new UrlConnectionTransport(1, 1000, 1000);
+    for (int i = 0; i < 3; i++) {
+      try (XeroHttpResponse response = transport.send(new OAuthRequest(Verb.GET, url + "missing"))) {
+        Assert.assertEquals(404, response.getCode());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DateAdapterTest {
+
+  private static final String[] ZONES = {
+      "UTC", "America/Los_Angeles", "Pacific/Auckland", "Asia/Kolkata", "Australia/Eucla" };
+
+  @Test
+  public void testPrintDateTimeMatchesDatatypeConverter() {
+    TimeZone original = TimeZone.getDefault();
+    try {
+      for (String zone : ZONES) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        Random random = new Random(42);
+        for (long millis : samples(random, 5000)) {
+          Date date = new Date(millis);
+          Assert.assertEquals(zone + " " + millis, reference(date), DateAdapter.printDateTime(date));
+        }
+      }
+    } finally {
+      TimeZone.setDefault(original);
+    }
+  }
+
+  @Test
+  public void testPrintUtcDateTime() {
+    Assert.assertEquals("2014-04-05T17:35:20", DateAdapter.printUtcDateTime(new Date(1396719320939L)));
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    for (long millis : samples(new Random(7), 5000)) {
+      Date date = new Date(millis);
+      Assert.assertEquals(String.valueOf(millis), format.format(date), DateAdapter.printUtcDateTime(date));
+    }
+  }
+
+  @Test
+  public void testEpochDayAndMonth() {
+    TimeZone original = TimeZone.getDefault();
+    try {
+      for (String zone : ZONES) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        Date date = DateAdapter.parseDateTime("2015-02-01T00:00:00");
+        Assert.assertEquals(16467, DateAdapter.toEpochDay(date));
+        Assert.assertEquals(16467, DateAdapter.toEpochDay(DateAdapter.parseDateTime("2015-02-01T23:59:59")));
+      }
+    } finally {
+      TimeZone.setDefault(original);
+    }
+    Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    // from 1582-10-15, before which Calendar switches to the Julian calendar
+    for (long day = -141427; day < 800000; day += 17) {
+      cal.setTimeInMillis(day * 86400000L);
+      Assert.assertEquals((cal.get(Calendar.YEAR) - 1970) * 12 + cal.get(Calendar.MONTH), DateAdapter.toEpochMonth(day));
+    }
+    Assert.assertEquals(0, DateAdapter.toEpochMonth(0));
+    Assert.assertEquals(-1, DateAdapter.toEpochMonth(-1));
+  }
+
+  @Test
+  public void testConcurrentPrinting() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < 16; t++) {
+        final long seed = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            for (long millis : samples(new Random(seed), 20000)) {
+              Date date = new Date(millis);
+              Assert.assertEquals(format.format(date), DateAdapter.printUtcDateTime(date));
+              Assert.assertEquals(reference(date), DateAdapter.printDateTime(date));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static String reference(Date date) {
+    Calendar cal = new GregorianCalendar();
+    cal.setTime(date);
+    return DatatypeConverter.printDate(cal);
+  }
+
+  /**
+   * Mostly recent dates, some around day boundaries and some far out of the fast path's range.
+   */
+  private static long[] samples(Random random, int count) {
+    long[] samples = new long[count];
+    for (int i = 0; i < count; i++) {
+      switch (i % 4) {
+        case 0:
+          samples[i] = 946684800000L + (long) (random.nextDouble() * 1000L * 86400000L * 365);
+          break;
+        case 1:
+          samples[i] = (random.nextInt(40000) - 2000) * 86400000L + random.nextInt(3) - 1;
+          break;
+        case 2:
+          samples[i] = -12212553600000L + (random.nextInt(3) - 1) * 86400000L + random.nextInt(7200000) - 3600000;
+          break;
+        default:
+          samples[i] = (long) ((random.nextDouble() - 0.5) * 2 * 300000000000000L);
+      }
+    }
+    return samples;
+  }
+
+}
@@ -0,0 +1,169 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.connectifier.xeroclient.models.Account;
+import com.connectifier.xeroclient.models.ArrayOfInvoice;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.Journal;
+import com.connectifier.xeroclient.models.ObjectFactory;
+import com.connectifier.xeroclient.models.Response;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+
+/**
+ * Checks that the generated codecs read and write the same as JAXB.
+ */
+public class GeneratedCodecTest {
+
+  private static final String EDGE_CASES = "<Response xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+      + "<Status>OK</Status>"
+      + "<Unknown><Status>ignored</Status></Unknown>"
+      + "<Accounts>"
+      + "  <Account status=\"ERROR\">"
+      + "    <Code>200</Code>"
+      + "    <Name>Sales &amp; &lt;Marketing&gt;</Name>"
+      + "    <Type>NOT_A_TYPE</Type>"
+      + "    <EnablePaymentsToAccount> 1 </EnablePaymentsToAccount>"
+      + "    <ValidationErrors>"
+      + "      <ValidationError><Message>Code is in use</Message></ValidationError>"
+      + "      <ValidationError xsi:nil=\"true\" />"
+      + "    </ValidationErrors>"
+      + "  </Account>"
+      + "  <Account><!-- a comment --><Name></Name><Type>REVENUE</Type></Account>"
+      + "</Accounts>"
+      + "<Journals>"
+      + "  <Journal>"
+      + "    <JournalNumber>not a number</JournalNumber>"
+      + "    <JournalDate>2015-02-01T00:00:00</JournalDate>"
+      + "    <JournalLines>"
+      + "      <JournalLine><NetAmount> -75000.00 </NetAmount><AccountType>REVENUE</AccountType></JournalLine>"
+      + "    </JournalLines>"
+      + "  </Journal>"
+      + "  <Journal><JournalNumber>42</JournalNumber><JournalLines /></Journal>"
+      + "</Journals>"
+      + "</Response>";
+
+  @Test
+  public void testModelsUseCodec() throws JAXBException {
+    Assert.assertTrue(JaxbBinder.of(Response.class).usesCodec(Response.class));
+    Assert.assertTrue(JaxbBinder.of(Invoice.class).usesCodec(Invoice.class));
+    Assert.assertFalse(JaxbBinder.of(Response.class).withoutCodecs().usesCodec(Response.class));
+    Assert.assertSame(JaxbBinder.of(Response.class).getContext(),
+        JaxbBinder.of(Response.class).withoutCodecs().getContext());
+  }
+
+  @Test
+  public void testReadMatchesJaxb() throws Exception {
+    for (String xml : new String[] { fixture(), EDGE_CASES }) {
+      Response codec = unmarshal(xml, true);
+      Response jaxb = unmarshal(xml, false);
+      Assert.assertEquals(marshal(jaxb), marshal(codec));
+    }
+  }
+
+  @Test
+  public void testReadEdgeCases() throws Exception {
+    Response response = unmarshal(EDGE_CASES, true);
+    Assert.assertEquals("Sales & <Marketing>", response.getAccounts().get(0).getName());
+    Assert.assertNull(response.getAccounts().get(0).getType());
+    Assert.assertTrue(response.getAccounts().get(0).isEnablePaymentsToAccount());
+    Assert.assertEquals(2, response.getAccounts().get(0).getValidationErrors().size());
+    Assert.assertNull(response.getAccounts().get(0).getValidationErrors().get(1));
+    Assert.assertEquals("", response.getAccounts().get(1).getName());
+    Assert.assertNull(response.getJournals().get(0).getJournalNumber());
+    Assert.assertEquals(Integer.valueOf(42), response.getJournals().get(1).getJournalNumber());
+    Assert.assertTrue(response.getJournals().get(1).getJournalLines().isEmpty());
+  }
+
+  @Test
+  public void testWriteMatchesJaxb() throws Exception {
+    for (String xml : new String[] { fixture(), EDGE_CASES }) {
+      Response response = unmarshal(xml, false);
+      Assert.assertEquals(marshal(response), marshal(response, true));
+    }
+  }
+
+  @Test
+  public void testWrittenRequestReadsBack() throws Exception {
+    ArrayOfInvoice invoices = new ArrayOfInvoice();
+    invoices.getInvoice().addAll(unmarshal(fixture(), true).getInvoices());
+    String request = marshal(new ObjectFactory().createInvoices(invoices), true);
+    Assert.assertEquals(marshal(new ObjectFactory().createInvoices(invoices), false), request);
+
+    ArrayOfInvoice read = binder(false)
+        .unmarshal(new StreamSource(new StringReader(request)), ArrayOfInvoice.class);
+    Assert.assertEquals(marshal(new ObjectFactory().createInvoices(invoices), false),
+        marshal(new ObjectFactory().createInvoices(read), false));
+  }
+
+  @Test
+  public void testStreamMatchesJaxb() throws Exception {
+    for (String xml : new String[] { fixture(), EDGE_CASES }) {
+      for (Class<?> clazz : new Class<?>[] { Invoice.class, Account.class, Journal.class }) {
+        Assert.assertEquals(stream(xml, clazz, false), stream(xml, clazz, true));
+      }
+    }
+  }
+
+  private static <T> List<String> stream(String xml, Class<T> clazz, boolean codecs)
+      throws JAXBException, XMLStreamException, IOException {
+    List<T> entities = new ArrayList<>();
+    try (StaxElementIterator<T> iter = new StaxElementIterator<>(
+        new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8)), clazz.getSimpleName(), clazz, binder(codecs))) {
+      while (iter.hasNext()) {
+        entities.add(iter.next());
+      }
+    }
+    List<String> marshalled = new ArrayList<>();
+    for (T entity : entities) {
+      marshalled.add(marshal(new JAXBElement<>(new QName(clazz.getSimpleName()), clazz, entity), false));
+    }
+    return marshalled;
+  }
+
+  private static String fixture() throws IOException {
+    return Resources.toString(Resources.getResource("create-invoice-response.xml"), Charsets.UTF_8);
+  }
+
+  private static Response unmarshal(String xml, boolean codecs) throws JAXBException {
+    return binder(codecs).unmarshal(new StreamSource(new StringReader(xml)), Response.class);
+  }
+
+  private static String marshal(Response response) throws JAXBException {
+    return marshal(response, false);
+  }
+
+  private static String marshal(Response response, boolean codecs) throws JAXBException {
+    // the ObjectFactory declares <Response> as ResponseType, which would make JAXB add an xsi:type
+    return marshal(new JAXBElement<>(new QName("Result"), Response.class, response), codecs);
+  }
+
+  private static String marshal(Object element, boolean codecs) throws JAXBException {
+    StringWriter writer = new StringWriter();
+    binder(codecs).marshal(element, writer);
+    return writer.toString();
+  }
+
+  private static JaxbBinder binder(boolean codecs) throws JAXBException {
+    JaxbBinder binder = JaxbBinder.of(Response.class);
+    return codecs ? binder : binder.withoutCodecs();
+  }
+
+}
@@ -0,0 +1,37 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.io.StringWriter;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.connectifier.xeroclient.models.ArrayOfInvoice;
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.ObjectFactory;
+import com.connectifier.xeroclient.models.Response;
+
+public class JaxbBinderTest {
+
+  @Test
+  public void testModelsShareContext() throws JAXBException {
+    Assert.assertSame(JaxbBinder.of(Response.class), JaxbBinder.of(ArrayOfInvoice.class));
+    Assert.assertSame(JaxbBinder.of(Response.class).getContext(), JaxbBinder.of(Invoice.class).getContext());
+  }
+
+  @Test
+  public void testMarshallerReused() throws JAXBException {
+    ObjectFactory objFactory = new ObjectFactory();
+    Invoice invoice = new Invoice();
+    invoice.setInvoiceNumber("INV-1");
+    for (int i = 0; i < 2; i++) {
+      StringWriter writer = new StringWriter();
+      JaxbBinder.of(Invoice.class).marshal(objFactory.createInvoice(invoice), writer);
+      Assert.assertTrue(writer.toString().contains("<InvoiceNumber>INV-1</InvoiceNumber>"));
+    }
+  }
+
+}
@@ -0,0 +1,78 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.connectifier.xeroclient.models.Invoice;
+import com.connectifier.xeroclient.models.Response;
+import com.google.common.base.Charsets;
+
+public class ProjectionTest {
+
+  private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+      + "<Response>"
+      + "<Id>1</Id>"
+      + "<Accounts><Account><Name>Sales</Name></Account></Accounts>"
+      + "<Invoices>"
+      + "  <Invoice>"
+      + "    <Contact><Name>ABC Ltd</Name></Contact>"
+      + "    <LineItems><LineItem><Description>Widget</Description></LineItem></LineItems>"
+      + "    <InvoiceNumber>INV-1</InvoiceNumber>"
+      + "    <Payments><Payment><Amount>10.00</Amount></Payment></Payments>"
+      + "    <CreditNotes><CreditNote><CreditNoteNumber>CN-1</CreditNoteNumber></CreditNote></CreditNotes>"
+      + "    <Total>20.00</Total>"
+      + "  </Invoice>"
+      + "  <Invoice><InvoiceNumber>INV-2</InvoiceNumber></Invoice>"
+      + "</Invoices>"
+      + "<Status>OK</Status>"
+      + "</Response>";
+
+  @Test
+  public void testOnlyCollectionIsBound() throws Exception {
+    for (boolean codecs : new boolean[] { true, false }) {
+      Response response = unmarshal(Projection.of(Response.class, "Invoices"), codecs);
+      Assert.assertNull(response.getId());
+      Assert.assertNull(response.getStatus());
+      Assert.assertTrue(response.getAccounts().isEmpty());
+      Assert.assertEquals(2, response.getInvoices().size());
+      Invoice invoice = response.getInvoices().get(0);
+      Assert.assertEquals("INV-1", invoice.getInvoiceNumber());
+      Assert.assertEquals("Widget", invoice.getLineItems().get(0).getDescription());
+      Assert.assertEquals(1, invoice.getPayments().size());
+    }
+  }
+
+  @Test
+  public void testExcludedElementsAreSkipped() throws Exception {
+    for (boolean codecs : new boolean[] { true, false }) {
+      Response response = unmarshal(Projection.of(Response.class, "Invoices")
+          .excluding("LineItems", "Payments", "CreditNotes"), codecs);
+      Invoice invoice = response.getInvoices().get(0);
+      Assert.assertEquals("ABC Ltd", invoice.getContact().getName());
+      Assert.assertEquals("INV-1", invoice.getInvoiceNumber());
+      Assert.assertEquals(new BigDecimal("20.00"), invoice.getTotal());
+      Assert.assertTrue(invoice.getLineItems().isEmpty());
+      Assert.assertTrue(invoice.getPayments().isEmpty());
+      Assert.assertTrue(invoice.getCreditNotes().isEmpty());
+      Assert.assertEquals("INV-2", response.getInvoices().get(1).getInvoiceNumber());
+    }
+  }
+
+  @Test
+  public void testMissingCollection() throws Exception {
+    Assert.assertNull(Projection.of(Response.class, "NotAnElement"));
+    Assert.assertTrue(unmarshal(Projection.of(Response.class, "Contacts"), true).getContacts().isEmpty());
+  }
+
+  private static Response unmarshal(Projection<Response> projection, boolean codecs) throws Exception {
+    JaxbBinder binder = JaxbBinder.of(Response.class);
+    return projection.unmarshal(new ByteArrayInputStream(XML.getBytes(Charsets.UTF_8)),
+        codecs ? binder : binder.withoutCodecs());
+  }
+
+}
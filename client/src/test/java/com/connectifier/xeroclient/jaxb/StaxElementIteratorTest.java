@@ -0,0 +1,44 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.connectifier.xeroclient.models.Invoice;
+import com.google.common.base.Charsets;
+
+public class StaxElementIteratorTest {
+
+  @Test
+  public void testIteratesEachElement() throws IOException, JAXBException, XMLStreamException {
+    String xml = "<Response><Id>1</Id><Invoices>"
+        + "<Invoice><InvoiceNumber>INV-1</InvoiceNumber><Contact><Name>A</Name></Contact></Invoice>"
+        + "<Invoice><InvoiceNumber>INV-2</InvoiceNumber></Invoice>"
+        + "</Invoices></Response>";
+    InputStream is = new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8));
+    try (StaxElementIterator<Invoice> iter = new StaxElementIterator<>(is, "Invoice", Invoice.class)) {
+      Invoice first = iter.next();
+      Assert.assertEquals("INV-1", first.getInvoiceNumber());
+      Assert.assertEquals("A", first.getContact().getName());
+      Assert.assertEquals("INV-2", iter.next().getInvoiceNumber());
+      Assert.assertFalse(iter.hasNext());
+    }
+  }
+
+  @Test
+  public void testEmptyCollection() throws IOException, JAXBException, XMLStreamException {
+    InputStream is = new ByteArrayInputStream("<Response><Invoices /></Response>".getBytes(Charsets.UTF_8));
+    try (StaxElementIterator<Invoice> iter = new StaxElementIterator<>(is, "Invoice", Invoice.class)) {
+      Assert.assertFalse(iter.hasNext());
+    }
+  }
+
+}
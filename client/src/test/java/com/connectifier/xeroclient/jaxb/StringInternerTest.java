@@ -0,0 +1,87 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.connectifier.xeroclient.metrics.DropwizardInstrumentation;
+import com.connectifier.xeroclient.models.JournalLine;
+import com.connectifier.xeroclient.models.Response;
+
+public class StringInternerTest {
+
+  private static final String XML = "<Response><Journals><Journal><JournalLines>"
+      + "<JournalLine><AccountCode>200</AccountCode><TaxType>OUTPUT</TaxType><Description>a</Description></JournalLine>"
+      + "<JournalLine><AccountCode>200</AccountCode><TaxType>OUTPUT</TaxType><Description>a</Description></JournalLine>"
+      + "</JournalLines></Journal></Journals></Response>";
+
+  @After
+  public void tearDown() {
+    StringInterner.disable();
+  }
+
+  @Test
+  public void testRepeatedValuesShareOneInstance() throws Exception {
+    for (boolean codecs : new boolean[] { true, false }) {
+      StringInterner.enable();
+      List<JournalLine> lines = unmarshal(codecs);
+      Assert.assertSame(lines.get(0).getAccountCode(), lines.get(1).getAccountCode());
+      Assert.assertSame(lines.get(0).getTaxType(), lines.get(1).getTaxType());
+      // fields not bound to the interner are left alone
+      Assert.assertNotSame(lines.get(0).getDescription(), lines.get(1).getDescription());
+      Assert.assertEquals(2, StringInterner.stats().hitCount());
+      Assert.assertEquals(2, StringInterner.stats().missCount());
+    }
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    Assert.assertFalse(StringInterner.isEnabled());
+    List<JournalLine> lines = unmarshal(true);
+    Assert.assertEquals("200", lines.get(0).getAccountCode());
+    Assert.assertNotSame(lines.get(0).getAccountCode(), lines.get(1).getAccountCode());
+    Assert.assertEquals(0, StringInterner.stats().requestCount());
+  }
+
+  @Test
+  public void testBounded() {
+    StringInterner.enable(2);
+    for (int i = 0; i < 100; i++) {
+      StringInterner.intern("value" + i);
+    }
+    Assert.assertTrue(StringInterner.size() <= 2);
+    Assert.assertTrue(StringInterner.stats().evictionCount() >= 98);
+    Assert.assertNull(StringInterner.intern(null));
+  }
+
+  @Test
+  public void testGauges() {
+    MetricRegistry registry = new MetricRegistry();
+    new DropwizardInstrumentation(registry).registerStringInterner();
+    StringInterner.enable();
+    StringInterner.intern(new String("200"));
+    StringInterner.intern(new String("200"));
+    Assert.assertEquals(0.5, (Double) gauge(registry, "xero.interner.hit-rate").getValue(), 0.0);
+    Assert.assertEquals(1L, gauge(registry, "xero.interner.size").getValue());
+  }
+
+  private static Gauge<?> gauge(MetricRegistry registry, String name) {
+    return registry.getGauges().get(name);
+  }
+
+  private static List<JournalLine> unmarshal(boolean codecs) throws Exception {
+    JaxbBinder binder = JaxbBinder.of(Response.class);
+    return (codecs ? binder : binder.withoutCodecs()).unmarshal(new StreamSource(new StringReader(XML)), Response.class)
+        .getJournals().get(0).getJournalLines();
+  }
+
+}
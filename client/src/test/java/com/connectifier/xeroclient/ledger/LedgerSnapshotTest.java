@@ -0,0 +1,197 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.ledger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.connectifier.xeroclient.jaxb.DateAdapter;
+import com.connectifier.xeroclient.models.Journal;
+import com.connectifier.xeroclient.models.JournalLine;
+import com.connectifier.xeroclient.models.TrackingCategory;
+
+public class LedgerSnapshotTest {
+
+  @Test
+  public void testColumnsAndDictionaries() {
+    LedgerBuilder builder = new LedgerBuilder();
+    builder.handle(journal(1, "2015-01-31T00:00:00",
+        line("acc-200", "200", "-100.00", "OUTPUT", tracking("Region", "North")),
+        line("acc-610", "610", "100.00", null)));
+    builder.handle(journal(2, "2015-02-01T00:00:00",
+        line("acc-200", "200", "-50.5", "OUTPUT", tracking("Region", "South"), tracking("Project", "X"))));
+    LedgerSnapshot ledger = builder.build();
+
+    Assert.assertEquals(3, ledger.size());
+    Assert.assertEquals(2, ledger.getAccountCount());
+    Assert.assertEquals(0, ledger.findAccountByCode("200"));
+    Assert.assertEquals("Account 610", ledger.getAccountName(ledger.findAccountByCode("610")));
+    Assert.assertEquals(-1, ledger.findAccountByCode("999"));
+    Assert.assertEquals(-10000L, ledger.getNetAmount(0));
+    Assert.assertEquals(-5050L, ledger.getNetAmount(2));
+    Assert.assertEquals(new BigDecimal("-50.50"), LedgerSnapshot.toBigDecimal(ledger.getNetAmount(2)));
+    Assert.assertEquals("OUTPUT", ledger.getTaxTypeName(ledger.getTaxType(0)));
+    Assert.assertEquals(-1, ledger.getTaxType(1));
+    Assert.assertEquals(2, ledger.getJournalNumber(2));
+    Assert.assertEquals(ledger.getEpochDay(0) + 1, ledger.getEpochDay(2));
+    Assert.assertEquals((2015 - 1970) * 12, ledger.getEpochMonth(0));
+    Assert.assertEquals((2015 - 1970) * 12 + 1, ledger.getEpochMonth(2));
+
+    Assert.assertEquals(2, ledger.getTrackingCategoryCount());
+    Assert.assertEquals("Region", ledger.getTrackingCategoryName(0));
+    Assert.assertEquals("North", ledger.getTrackingOptionName(0, ledger.getTrackingOption(0, 0)));
+    Assert.assertEquals(-1, ledger.getTrackingOption(0, 1));
+    Assert.assertEquals("South", ledger.getTrackingOptionName(0, ledger.getTrackingOption(0, 2)));
+    Assert.assertEquals(-1, ledger.getTrackingOption(1, 0));
+    Assert.assertEquals("X", ledger.getTrackingOptionName(1, ledger.getTrackingOption(1, 2)));
+  }
+
+  @Test
+  public void testTrialBalanceByDayAndMonth() {
+    LedgerSnapshot ledger = new LedgerBuilder()
+        .add(journal(1, "2015-01-31T00:00:00", line("a", "200", "-100.00", null), line("b", "610", "100.00", null)))
+        .add(journal(2, "2015-02-01T00:00:00", line("a", "200", "-25.00", null), line("b", "610", "25.00", null)))
+        .add(journal(3, "2015-03-15T00:00:00", line("a", "200", "-1.00", null), line("b", "610", "1.00", null)))
+        .build();
+    int february = DateAdapter.toEpochDay(DateAdapter.parseDateTime("2015-02-01T00:00:00"));
+    Assert.assertArrayEquals(new long[] { -10000, 10000 }, ledger.trialBalance(Integer.MIN_VALUE, february));
+    Assert.assertArrayEquals(new long[] { -12600, 12600 }, ledger.trialBalance(Integer.MIN_VALUE, Integer.MAX_VALUE));
+
+    int january = (2015 - 1970) * 12;
+    long[][] byMonth = ledger.trialBalanceByMonth(january, january + 2);
+    Assert.assertArrayEquals(new long[] { -10000, -2500 }, byMonth[0]);
+    Assert.assertArrayEquals(new long[] { 10000, 2500 }, byMonth[1]);
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    Random random = new Random(42);
+    LedgerBuilder builder = new LedgerBuilder();
+    BigDecimal expected = BigDecimal.ZERO;
+    for (int i = 1; i <= 100000; i++) {
+      String date = String.format("201%d-%02d-%02dT00:00:00", random.nextInt(6), 1 + random.nextInt(12),
+          1 + random.nextInt(28));
+      String amount = BigDecimal.valueOf(random.nextInt(2000000) - 1000000, 2).toPlainString();
+      int account = random.nextInt(50);
+      if (account == 7) {
+        expected = expected.add(new BigDecimal(amount));
+      }
+      builder.add(journal(i, date, line("acc" + account, String.valueOf(account), amount, null),
+          line("suspense", "999", new BigDecimal(amount).negate().toPlainString(), null)));
+    }
+    final LedgerSnapshot ledger = builder.build();
+    Assert.assertTrue(ledger.size() > 2 * LedgerSnapshot.PARALLEL_THRESHOLD);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      long[] sequential = ledger.trialBalance(Integer.MIN_VALUE, Integer.MAX_VALUE);
+      Assert.assertArrayEquals(sequential, ledger.trialBalance(Integer.MIN_VALUE, Integer.MAX_VALUE, pool));
+      final int account = ledger.findAccountByCode("7");
+      Assert.assertEquals(expected, LedgerSnapshot.toBigDecimal(sequential[account]));
+      Assert.assertEquals(0, sum(sequential));
+
+      int from = (2011 - 1970) * 12;
+      long[][] byMonth = ledger.trialBalanceByMonth(from, from + 36);
+      Assert.assertTrue(Arrays.deepEquals(byMonth, ledger.trialBalanceByMonth(from, from + 36, pool)));
+
+      Assert.assertEquals(sequential[account], ledger.sumNetAmounts(new LedgerSnapshot.RowFilter() {
+        @Override
+        public boolean accept(LedgerSnapshot ledger, int row) {
+          return ledger.getAccount(row) == account;
+        }
+      }));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testSelect() {
+    LedgerSnapshot ledger = new LedgerBuilder()
+        .add(journal(1, "2015-01-31T00:00:00", line("a", "200", "-100.00", "OUTPUT"), line("b", "610", "100.00", null)))
+        .add(journal(2, "2015-02-01T00:00:00", line("a", "200", "-25.00", "OUTPUT"), line("b", "610", "25.00", null)))
+        .build();
+    int[] rows = ledger.select(new LedgerSnapshot.RowFilter() {
+      @Override
+      public boolean accept(LedgerSnapshot ledger, int row) {
+        return ledger.getTaxType(row) >= 0;
+      }
+    });
+    Assert.assertArrayEquals(new int[] { 0, 2 }, rows);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsSubCentAmounts() {
+    new LedgerBuilder().add(journal(1, "2015-01-31T00:00:00", line("a", "200", "0.005", null)));
+  }
+
+  @Test
+  public void testBadJournalAddsNothing() {
+    LedgerBuilder builder = new LedgerBuilder()
+        .add(journal(1, "2015-01-31T00:00:00", line("a", "200", "-100.00", null), line("b", "610", "100.00", null)));
+    try {
+      builder.add(journal(2, "2015-02-01T00:00:00", line("c", "300", "-1.00", "OUTPUT"),
+          line("b", "610", "0.005", null)));
+      Assert.fail("Expected the sub-cent amount to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    LedgerSnapshot ledger = builder.build();
+    Assert.assertEquals(2, ledger.size());
+    Assert.assertEquals(2, ledger.getAccountCount());
+    Assert.assertEquals(0, ledger.getTaxTypeCount());
+  }
+
+  @Test
+  public void testEmpty() {
+    LedgerSnapshot ledger = new LedgerBuilder().build();
+    Assert.assertEquals(0, ledger.size());
+    Assert.assertEquals(0, ledger.trialBalance(Integer.MIN_VALUE, Integer.MAX_VALUE).length);
+  }
+
+  private static long sum(long[] values) {
+    long sum = 0;
+    for (long value : values) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  private static Journal journal(int number, String date, JournalLine... lines) {
+    Journal journal = new Journal();
+    journal.setJournalNumber(number);
+    journal.setJournalDate(DateAdapter.parseDateTime(date));
+    journal.setJournalLines(new ArrayList<>(Arrays.asList(lines)));
+    return journal;
+  }
+
+  private static JournalLine line(String accountID, String accountCode, String netAmount, String taxType,
+      TrackingCategory... tracking) {
+    JournalLine line = new JournalLine();
+    line.setAccountID(accountID);
+    line.setAccountCode(accountCode);
+    line.setAccountName("Account " + accountCode);
+    line.setNetAmount(new BigDecimal(netAmount));
+    line.setTaxType(taxType);
+    List<TrackingCategory> categories = new ArrayList<>();
+    Collections.addAll(categories, tracking);
+    line.setTrackingCategories(categories);
+    return line;
+  }
+
+  private static TrackingCategory tracking(String name, String option) {
+    TrackingCategory category = new TrackingCategory();
+    category.setName(name);
+    category.setOption(option);
+    return category;
+  }
+
+}
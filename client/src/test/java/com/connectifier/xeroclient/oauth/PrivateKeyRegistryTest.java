@@ -0,0 +1,21 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.oauth;
+
+import java.io.StringReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrivateKeyRegistryTest {
+
+  @Test
+  public void testCachesByFingerprint() {
+    String pem = TestKeys.generatePem();
+    Assert.assertSame(PrivateKeyRegistry.get(new StringReader(pem)), PrivateKeyRegistry.get(new StringReader(pem + "\n")));
+    Assert.assertNotSame(PrivateKeyRegistry.get(new StringReader(pem)),
+        PrivateKeyRegistry.get(new StringReader(TestKeys.generatePem())));
+    Assert.assertEquals(PrivateKeyRegistry.parse(pem), PrivateKeyRegistry.get(new StringReader(pem)));
+  }
+
+}
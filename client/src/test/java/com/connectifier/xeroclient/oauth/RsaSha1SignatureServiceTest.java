@@ -0,0 +1,61 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.oauth;
+
+import java.io.StringReader;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scribe.services.RSASha1SignatureService;
+
+public class RsaSha1SignatureServiceTest {
+
+  @Test
+  public void testMatchesScribe() {
+    PrivateKey key = PrivateKeyRegistry.get(new StringReader(TestKeys.pem()));
+    RsaSha1SignatureService service = new RsaSha1SignatureService(key);
+    RSASha1SignatureService scribe = new RSASha1SignatureService(key);
+    Assert.assertEquals(scribe.getSignatureMethod(), service.getSignatureMethod());
+    for (int i = 0; i < 10; i++) {
+      String baseString = "GET&https%3A%2F%2Fapi.xero.com%2Fapi.xro%2F2.0%2FInvoices&oauth_nonce%3D" + i;
+      Assert.assertEquals(scribe.getSignature(baseString, "secret", ""), service.getSignature(baseString, "secret", ""));
+    }
+  }
+
+  @Test
+  public void testConcurrentSigning() throws Exception {
+    PrivateKey key = PrivateKeyRegistry.get(new StringReader(TestKeys.pem()));
+    final RsaSha1SignatureService service = new RsaSha1SignatureService(key);
+    final RSASha1SignatureService scribe = new RSASha1SignatureService(key);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < 50; i++) {
+              String baseString = "GET&thread%3D" + thread + "%26i%3D" + i;
+              Assert.assertEquals(scribe.getSignature(baseString, "", ""), service.getSignature(baseString, "", ""));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
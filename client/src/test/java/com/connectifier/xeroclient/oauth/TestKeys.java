@@ -0,0 +1,40 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.oauth;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+
+/**
+ * Throwaway RSA keys in the PEM format Xero private apps use.
+ */
+public class TestKeys {
+
+  private static String pem;
+
+  public static synchronized String pem() {
+    if (pem == null) {
+      pem = generatePem();
+    }
+    return pem;
+  }
+
+  public static String generatePem() {
+    try {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+      generator.initialize(1024);
+      StringWriter writer = new StringWriter();
+      try (JcaPEMWriter pemWriter = new JcaPEMWriter(writer)) {
+        pemWriter.writeObject(generator.generateKeyPair());
+      }
+      return writer.toString();
+    } catch (GeneralSecurityException | IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
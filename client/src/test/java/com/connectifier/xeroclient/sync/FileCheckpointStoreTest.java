@@ -0,0 +1,33 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.sync;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileCheckpointStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSurvivesReload() throws Exception {
+    File file = new File(folder.getRoot(), "checkpoints.properties");
+    FileCheckpointStore store = new FileCheckpointStore(file.toPath());
+    Assert.assertNull(store.get("tenant", "Invoices"));
+    store.put("tenant", "Invoices", 42L);
+    store.put("tenant", "Contacts", 7L);
+    store.put("tenant", "Invoices", 43L);
+
+    FileCheckpointStore reloaded = new FileCheckpointStore(file.toPath());
+    Assert.assertEquals(Long.valueOf(43L), reloaded.get("tenant", "Invoices"));
+    Assert.assertEquals(Long.valueOf(7L), reloaded.get("tenant", "Contacts"));
+    Assert.assertNull(reloaded.get("other", "Invoices"));
+    Assert.assertEquals(1, folder.getRoot().list().length);
+  }
+
+}
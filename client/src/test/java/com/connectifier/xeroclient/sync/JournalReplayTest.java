@@ -0,0 +1,90 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.sync;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.connectifier.xeroclient.EntityHandler;
+import com.connectifier.xeroclient.jaxb.JaxbBinder;
+import com.connectifier.xeroclient.models.Journal;
+
+public class JournalReplayTest {
+
+  private final MapCheckpointStore store = new MapCheckpointStore();
+
+  @Test
+  public void testResumesAfterFailure() {
+    FakeJournalReplay replay = new FakeJournalReplay(250);
+    final List<Long> handled = new ArrayList<>();
+    try {
+      replay.replay(new EntityHandler<Journal>() {
+        @Override
+        public void handle(Journal journal) {
+          long number = Long.parseLong(String.valueOf(journal.getJournalNumber()));
+          if (number == 150) {
+            throw new IllegalStateException();
+          }
+          handled.add(number);
+        }
+      });
+      Assert.fail();
+    } catch (IllegalStateException expected) {
+    }
+    Assert.assertEquals(Long.valueOf(149), store.get("tenant", JournalReplay.END_POINT));
+
+    Assert.assertEquals(101, replay.replay(new EntityHandler<Journal>() {
+      @Override
+      public void handle(Journal journal) {
+        handled.add(Long.parseLong(String.valueOf(journal.getJournalNumber())));
+      }
+    }));
+    Assert.assertEquals(Long.valueOf(149), replay.offsets.get(1));
+    Assert.assertEquals(250, handled.size());
+    for (int i = 0; i < handled.size(); i++) {
+      Assert.assertEquals(Long.valueOf(i + 1), handled.get(i));
+    }
+    Assert.assertEquals(Long.valueOf(250), store.get("tenant", JournalReplay.END_POINT));
+  }
+
+  /**
+   * Serves journals 1..total after the requested offset.
+   */
+  private class FakeJournalReplay extends JournalReplay {
+    private final int total;
+    final List<Long> offsets = new ArrayList<>();
+
+    FakeJournalReplay(int total) {
+      super(null, "tenant", store);
+      this.total = total;
+    }
+
+    @Override
+    protected Iterator<Journal> journals(long offset) {
+      offsets.add(offset);
+      List<Journal> journals = new ArrayList<>();
+      for (long i = offset + 1; i <= total; i++) {
+        journals.add(journal(i));
+      }
+      return journals.iterator();
+    }
+  }
+
+  private static Journal journal(long number) {
+    try {
+      String xml = "<Journal><JournalNumber>" + number + "</JournalNumber></Journal>";
+      return JaxbBinder.of(Journal.class).unmarshal(new StreamSource(new StringReader(xml)), Journal.class);
+    } catch (JAXBException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
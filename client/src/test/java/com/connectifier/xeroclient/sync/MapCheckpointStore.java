@@ -0,0 +1,22 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.sync;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class MapCheckpointStore implements CheckpointStore {
+
+  private final Map<String, Long> checkpoints = new HashMap<>();
+
+  @Override
+  public synchronized Long get(String tenant, String endPoint) {
+    return checkpoints.get(tenant + "/" + endPoint);
+  }
+
+  @Override
+  public synchronized void put(String tenant, String endPoint, long checkpoint) {
+    checkpoints.put(tenant + "/" + endPoint, checkpoint);
+  }
+
+}
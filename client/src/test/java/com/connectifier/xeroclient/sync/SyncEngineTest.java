@@ -0,0 +1,95 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.sync;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.connectifier.xeroclient.EntityHandler;
+
+public class SyncEngineTest {
+
+  private final MapCheckpointStore store = new MapCheckpointStore();
+  private final SyncEngine engine = new SyncEngine(null, "tenant", store);
+
+  @Test
+  public void testAdvancesWatermarkPerPage() {
+    FakeEndpoint endpoint = new FakeEndpoint(250);
+    final List<Long> handled = new ArrayList<>();
+    int count = engine.sync(endpoint, new EntityHandler<Long>() {
+      @Override
+      public void handle(Long entity) {
+        handled.add(entity);
+        Assert.assertEquals(entity < 100 ? null : Long.valueOf(entity / 100 * 100 - 1), store.get("tenant", "Fake"));
+      }
+    });
+    Assert.assertEquals(250, count);
+    Assert.assertEquals(250, handled.size());
+    Assert.assertEquals(Long.valueOf(249), store.get("tenant", "Fake"));
+    Assert.assertNull(endpoint.modifiedAfter);
+  }
+
+  @Test
+  public void testResumesFromWatermarkWithSkew() {
+    store.put("tenant", "Fake", 400000L);
+    engine.setClockSkewMillis(1000);
+    FakeEndpoint endpoint = new FakeEndpoint(0);
+    Assert.assertEquals(0, engine.sync(endpoint, new EntityHandler<Long>() {
+      @Override
+      public void handle(Long entity) {
+      }
+    }));
+    Assert.assertEquals(399000L, endpoint.modifiedAfter.getTime());
+    Assert.assertEquals(Long.valueOf(400000L), store.get("tenant", "Fake"));
+  }
+
+  @Test
+  public void testFailedPageIsNotCheckpointed() {
+    try {
+      engine.sync(new FakeEndpoint(250), new EntityHandler<Long>() {
+        @Override
+        public void handle(Long entity) {
+          if (entity == 150) {
+            throw new IllegalStateException();
+          }
+        }
+      });
+      Assert.fail();
+    } catch (IllegalStateException expected) {
+    }
+    Assert.assertEquals(Long.valueOf(99), store.get("tenant", "Fake"));
+  }
+
+  /**
+   * Serves entities 0..total-1 whose update time is their own value.
+   */
+  private static class FakeEndpoint extends SyncEngine.Endpoint<Long> {
+    private final int total;
+    Date modifiedAfter;
+
+    FakeEndpoint(int total) {
+      super("Fake", true);
+      this.total = total;
+    }
+
+    @Override
+    protected List<Long> fetch(Date modifiedAfter, int page) {
+      this.modifiedAfter = modifiedAfter;
+      List<Long> entities = new ArrayList<>();
+      for (long i = (page - 1) * 100; i < Math.min(total, page * 100); i++) {
+        entities.add(i);
+      }
+      return entities;
+    }
+
+    @Override
+    protected Date getUpdatedDate(Long entity) {
+      return new Date(entity);
+    }
+  }
+
+}
@@ -0,0 +1,734 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.sun.codemodel.ClassType;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JCase;
+import com.sun.codemodel.JCatchBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JConditional;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldRef;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JForEach;
+import com.sun.codemodel.JInvocation;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JPackage;
+import com.sun.codemodel.JSwitch;
+import com.sun.codemodel.JTryBlock;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.codemodel.JWhileLoop;
+import com.sun.tools.xjc.model.CAdapter;
+import com.sun.tools.xjc.model.CAttributePropertyInfo;
+import com.sun.tools.xjc.model.CBuiltinLeafInfo;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CEnumLeafInfo;
+import com.sun.tools.xjc.model.CNonElement;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CTypeRef;
+import com.sun.tools.xjc.model.CValuePropertyInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * Generates a ModelCodec class in each model package with a StAX reader and writer for every
+ * class, which work on the classes' fields directly instead of through JAXB's reflection.
+ *
+ * Only what the Xero schemas use is covered: unqualified elements and attributes, simple and
+ * complex element types, lists, enums, nil and type adapters. Classes that need anything else,
+ * e.g. wildcards, xsi:type or namespaces, are left out along with the classes that reference
+ * them, and are bound by JAXB as before.
+ */
+class CodecGenerator {
+
+  static final String CLASS_NAME = "ModelCodec";
+
+  /** The DatatypeConverter parse and print methods for each supported built-in type. */
+  private static final Map<CBuiltinLeafInfo, String[]> BUILTINS = new HashMap<>();
+  static {
+    BUILTINS.put(CBuiltinLeafInfo.BOOLEAN, new String[] { "Boolean", "printBoolean" });
+    BUILTINS.put(CBuiltinLeafInfo.INT, new String[] { "Int", "printInt" });
+    BUILTINS.put(CBuiltinLeafInfo.LONG, new String[] { "Long", "printLong" });
+    BUILTINS.put(CBuiltinLeafInfo.SHORT, new String[] { "Short", "printShort" });
+    BUILTINS.put(CBuiltinLeafInfo.BYTE, new String[] { "Byte", "printByte" });
+    BUILTINS.put(CBuiltinLeafInfo.FLOAT, new String[] { "Float", "printFloat" });
+    BUILTINS.put(CBuiltinLeafInfo.DOUBLE, new String[] { "Double", "printDouble" });
+    BUILTINS.put(CBuiltinLeafInfo.BIG_INTEGER, new String[] { "Integer", "printInteger" });
+    BUILTINS.put(CBuiltinLeafInfo.BIG_DECIMAL, new String[] { "Decimal", "printDecimal" });
+    BUILTINS.put(CBuiltinLeafInfo.BASE64_BYTE_ARRAY, new String[] { "Base64Binary", "printBase64Binary" });
+  }
+
+  private final Outline outline;
+  private final JCodeModel model;
+
+  CodecGenerator(Outline outline) {
+    this.outline = outline;
+    this.model = outline.getCodeModel();
+  }
+
+  void generate() {
+    Map<JPackage, List<CClassInfo>> packages = new LinkedHashMap<>();
+    for (CClassInfo ci : supportedClasses()) {
+      JPackage pkg = outline.getClazz(ci).implClass._package();
+      if (!packages.containsKey(pkg)) {
+        packages.put(pkg, new ArrayList<CClassInfo>());
+      }
+      packages.get(pkg).add(ci);
+    }
+    for (Map.Entry<JPackage, List<CClassInfo>> entry : packages.entrySet()) {
+      new PackageCodec(entry.getKey(), entry.getValue()).generate();
+    }
+  }
+
+  /**
+   * Returns the classes whose properties can all be handled, leaving out those that reference
+   * a class that can't be or that is in another package, whose fields wouldn't be accessible.
+   */
+  private Set<CClassInfo> supportedClasses() {
+    Set<CClassInfo> supported = new LinkedHashSet<>();
+    for (ClassOutline co : outline.getClasses()) {
+      if (isSupported(co.target)) {
+        supported.add(co.target);
+      }
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (CClassInfo ci : new ArrayList<>(supported)) {
+        for (CClassInfo referenced : referencedClasses(ci)) {
+          if (!supported.contains(referenced) || packageOf(referenced) != packageOf(ci)) {
+            supported.remove(ci);
+            changed = true;
+            break;
+          }
+        }
+      }
+    }
+    return supported;
+  }
+
+  private boolean isSupported(CClassInfo ci) {
+    if (ci.hasSubClasses() || ci.isAbstract() || ci.hasAttributeWildcard() || ci.getRefBaseClass() != null) {
+      return false;
+    }
+    for (CPropertyInfo prop : properties(ci)) {
+      if (field(ci, prop) == null) {
+        return false;
+      }
+      if (prop instanceof CElementPropertyInfo) {
+        CElementPropertyInfo element = (CElementPropertyInfo) prop;
+        if (element.isValueList() || element.getTypes().size() != 1 || !isUnqualified(element.getTypes().get(0).getTagName())) {
+          return false;
+        }
+        CNonElement target = element.getTypes().get(0).getTarget();
+        if (!(target instanceof CClassInfo) && !isSupportedLeaf(target, element.getAdapter())) {
+          return false;
+        }
+      } else if (prop instanceof CAttributePropertyInfo) {
+        CAttributePropertyInfo attribute = (CAttributePropertyInfo) prop;
+        if (!isUnqualified(attribute.getXmlName()) || !isSupportedLeaf(attribute.getTarget(), attribute.getAdapter())) {
+          return false;
+        }
+      } else if (prop instanceof CValuePropertyInfo) {
+        CValuePropertyInfo value = (CValuePropertyInfo) prop;
+        if (value.isCollection() || !isSupportedLeaf(value.getTarget(), value.getAdapter())) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSupportedLeaf(CNonElement target, CAdapter adapter) {
+    if (adapter != null) {
+      return adapter.defaultType.fullName().equals(String.class.getName());
+    }
+    return target == CBuiltinLeafInfo.STRING || BUILTINS.containsKey(target) || target instanceof CEnumLeafInfo;
+  }
+
+  private static boolean isUnqualified(QName name) {
+    return name.getNamespaceURI().isEmpty();
+  }
+
+  private static Set<CClassInfo> referencedClasses(CClassInfo ci) {
+    Set<CClassInfo> referenced = new HashSet<>();
+    for (CPropertyInfo prop : properties(ci)) {
+      if (prop instanceof CElementPropertyInfo) {
+        CNonElement target = ((CElementPropertyInfo) prop).getTypes().get(0).getTarget();
+        if (target instanceof CClassInfo) {
+          referenced.add((CClassInfo) target);
+        }
+      }
+    }
+    return referenced;
+  }
+
+  /**
+   * The properties of the class and its base classes, in the order JAXB writes them.
+   */
+  private static List<CPropertyInfo> properties(CClassInfo ci) {
+    List<CPropertyInfo> properties = new ArrayList<>();
+    for (CClassInfo c = ci; c != null; c = c.getBaseClass()) {
+      properties.addAll(0, c.getProperties());
+    }
+    return properties;
+  }
+
+  private JPackage packageOf(CClassInfo ci) {
+    return outline.getClazz(ci).implClass._package();
+  }
+
+  private JFieldVar field(CClassInfo ci, CPropertyInfo prop) {
+    for (CClassInfo c = ci; c != null; c = c.getBaseClass()) {
+      if (c.getProperties().contains(prop)) {
+        return outline.getClazz(c).implClass.fields().get(prop.getName(false));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The codec for the supported classes of one package.
+   */
+  private class PackageCodec {
+
+    private final JPackage pkg;
+    private final List<CClassInfo> classes;
+    private final Map<CClassInfo, JMethod> readers = new HashMap<>();
+    private final Map<CClassInfo, JMethod> writers = new HashMap<>();
+    /** Helper methods by name, created the first time they are needed. */
+    private final Map<String, JMethod> helpers = new HashMap<>();
+    private JDefinedClass codec;
+
+    PackageCodec(JPackage pkg, List<CClassInfo> classes) {
+      this.pkg = pkg;
+      this.classes = classes;
+    }
+
+    void generate() {
+      try {
+        codec = pkg._class(JMod.PUBLIC | JMod.FINAL, CLASS_NAME, ClassType.CLASS);
+      } catch (JClassAlreadyExistsException e) {
+        throw new IllegalStateException("Schema already defines " + pkg.name() + "." + CLASS_NAME, e);
+      }
+      codec.javadoc().add("Reads and writes the model classes with StAX without going through JAXB's reflection.\n"
+          + "Each reader starts on the element's start tag and stops on its end tag.");
+      codec.constructor(JMod.PRIVATE);
+
+      for (CClassInfo ci : classes) {
+        JClass implClass = outline.getClazz(ci).implClass;
+        String name = implClass.fullName().substring(pkg.name().length() + 1).replace(".", "");
+        JMethod reader = codec.method(JMod.PUBLIC | JMod.STATIC, implClass, "read" + name);
+        reader.param(XMLStreamReader.class, "reader");
+        reader._throws(XMLStreamException.class);
+        readers.put(ci, reader);
+        JMethod writer = codec.method(JMod.PUBLIC | JMod.STATIC, model.VOID, "write" + name);
+        writer.param(XMLStreamWriter.class, "writer");
+        writer.param(String.class, "name");
+        writer.param(implClass, "value");
+        writer._throws(XMLStreamException.class);
+        writers.put(ci, writer);
+      }
+      generateSupports();
+      generateRead();
+      generateWrite();
+      for (CClassInfo ci : classes) {
+        generateReader(ci);
+        generateWriter(ci);
+      }
+    }
+
+    private void generateSupports() {
+      JInvocation classes = model.ref(Arrays.class).staticInvoke("asList");
+      for (CClassInfo ci : this.classes) {
+        classes.arg(outline.getClazz(ci).implClass.dotclass());
+      }
+      JClass setType = model.ref(Set.class).narrow(model.ref(Class.class).narrow(model.wildcard()));
+      JFieldVar supported = codec.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, setType, "SUPPORTED",
+          JExpr._new(model.ref(HashSet.class).narrow(model.ref(Class.class).narrow(model.wildcard()))).arg(classes));
+
+      JMethod supports = codec.method(JMod.PUBLIC | JMod.STATIC, model.BOOLEAN, "supports");
+      JVar clazz = supports.param(model.ref(Class.class).narrow(model.wildcard()), "clazz");
+      supports.body()._return(supported.invoke("contains").arg(clazz));
+    }
+
+    private void generateRead() {
+      JMethod read = codec.method(JMod.PUBLIC | JMod.STATIC, Object.class, "read");
+      read.javadoc().add("Reads an instance of the given class from the element at the reader's cursor, or from the\n"
+          + "next element if the cursor isn't on a start tag.");
+      JVar reader = read.param(XMLStreamReader.class, "reader");
+      JVar clazz = read.param(model.ref(Class.class).narrow(model.wildcard()), "clazz");
+      read._throws(XMLStreamException.class);
+      JExpression startElement = model.ref(XMLStreamConstants.class).staticRef("START_ELEMENT");
+      read.body()._if(reader.invoke("getEventType").ne(startElement)
+          .cand(JExpr.invoke(nextElement()).arg(reader).ne(startElement)))
+          ._then()._throw(JExpr._new(model.ref(XMLStreamException.class)).arg("No element to read"));
+      for (CClassInfo ci : classes) {
+        read.body()._if(clazz.eq(outline.getClazz(ci).implClass.dotclass()))
+            ._then()._return(JExpr.invoke(readers.get(ci)).arg(reader));
+      }
+      read.body()._throw(JExpr._new(model.ref(IllegalArgumentException.class))
+          .arg(JExpr.lit("No codec for ").plus(clazz.invoke("getName"))));
+    }
+
+    private void generateWrite() {
+      JMethod write = codec.method(JMod.PUBLIC | JMod.STATIC, model.VOID, "write");
+      write.javadoc().add("Writes the value as an element with the given name.");
+      JVar writer = write.param(XMLStreamWriter.class, "writer");
+      JVar name = write.param(String.class, "name");
+      JVar value = write.param(Object.class, "value");
+      write._throws(XMLStreamException.class);
+      JVar clazz = write.body().decl(model.ref(Class.class).narrow(model.wildcard()), "clazz", value.invoke("getClass"));
+      for (CClassInfo ci : classes) {
+        JClass implClass = outline.getClazz(ci).implClass;
+        JBlock then = write.body()._if(clazz.eq(implClass.dotclass()))._then();
+        then.invoke(writers.get(ci)).arg(writer).arg(name).arg(JExpr.cast(implClass, value));
+        then._return();
+      }
+      write.body()._throw(JExpr._new(model.ref(IllegalArgumentException.class))
+          .arg(JExpr.lit("No codec for ").plus(clazz.invoke("getName"))));
+    }
+
+    private void generateReader(CClassInfo ci) {
+      JMethod method = readers.get(ci);
+      JVar reader = method.params().get(0);
+      JBlock body = method.body();
+      JClass implClass = outline.getClazz(ci).implClass;
+      JVar value = body.decl(implClass, "value", JExpr._new(implClass));
+
+      // attributes are only readable while the cursor is still on the start tag
+      JVar attribute = null;
+      for (CPropertyInfo prop : properties(ci)) {
+        if (prop instanceof CAttributePropertyInfo) {
+          CAttributePropertyInfo attr = (CAttributePropertyInfo) prop;
+          JFieldVar field = field(ci, prop);
+          if (attribute == null) {
+            attribute = body.decl(model.ref(String.class), "attribute");
+          }
+          body.assign(attribute, reader.invoke("getAttributeValue").arg(JExpr._null()).arg(attr.getXmlName().getLocalPart()));
+          assignLeaf(body._if(attribute.ne(JExpr._null()))._then(), value.ref(field), field.type(), attr.getTarget(),
+              attr.getAdapter(), attribute);
+        }
+      }
+      JSwitch elements = null;
+      for (CPropertyInfo prop : properties(ci)) {
+        JFieldVar field = field(ci, prop);
+        JFieldRef ref = value.ref(field);
+        if (prop instanceof CAttributePropertyInfo) {
+          continue;
+        } else if (prop instanceof CValuePropertyInfo) {
+          CValuePropertyInfo valueProp = (CValuePropertyInfo) prop;
+          assignLeaf(body, ref, field.type(), valueProp.getTarget(), valueProp.getAdapter(), reader.invoke("getElementText"));
+          body._return(value);
+          return;
+        } else {
+          if (elements == null) {
+            JWhileLoop loop = body._while(JExpr.invoke(nextElement()).arg(reader)
+                .eq(model.ref(XMLStreamConstants.class).staticRef("START_ELEMENT")));
+            elements = loop.body()._switch(JExpr.invoke(localName()).arg(reader));
+          }
+          CElementPropertyInfo element = (CElementPropertyInfo) prop;
+          CTypeRef type = element.getTypes().get(0);
+          JCase c = elements._case(JExpr.lit(type.getTagName().getLocalPart()));
+          readElement(c.body(), reader, ref, field.type(), element, type);
+          c.body()._break();
+        }
+      }
+      if (elements == null) {
+        body._while(JExpr.invoke(nextElement()).arg(reader)
+            .eq(model.ref(XMLStreamConstants.class).staticRef("START_ELEMENT")))
+            .body().invoke(skip()).arg(reader);
+      } else {
+        elements._default().body().invoke(skip()).arg(reader);
+      }
+      body._return(value);
+    }
+
+    private void readElement(JBlock block, JVar reader, JFieldRef ref, JType fieldType,
+        CElementPropertyInfo element, CTypeRef type) {
+      JExpression isNil = JExpr.invoke(nil()).arg(reader);
+      if (element.isCollection()) {
+        JClass itemType = ((JClass) fieldType).getTypeParameters().get(0);
+        block._if(ref.eq(JExpr._null()))._then().assign(ref, JExpr._new(model.ref(ArrayList.class).narrow(itemType)));
+        block.add(ref.invoke("add").arg(JOp.cond(isNil, JExpr._null(), readValue(reader, itemType, element, type))));
+      } else if (fieldType.isPrimitive()) {
+        JBlock notNil = block._if(isNil.not())._then();
+        JVar parsed = notNil.decl(fieldType.boxify(), "parsed", readValue(reader, fieldType.boxify(), element, type));
+        notNil._if(parsed.ne(JExpr._null()))._then().assign(ref, parsed);
+      } else {
+        block.assign(ref, JOp.cond(isNil, JExpr._null(), readValue(reader, fieldType, element, type)));
+      }
+    }
+
+    private JExpression readValue(JVar reader, JType type, CElementPropertyInfo element, CTypeRef typeRef) {
+      if (typeRef.getTarget() instanceof CClassInfo) {
+        return JExpr.invoke(readers.get(typeRef.getTarget())).arg(reader);
+      }
+      return parse(typeRef.getTarget(), element.getAdapter(), type, reader.invoke("getElementText"));
+    }
+
+    private void assignLeaf(JBlock block, JFieldRef ref, JType fieldType, CNonElement target, CAdapter adapter,
+        JExpression text) {
+      JExpression parsed = parse(target, adapter, fieldType.boxify(), text);
+      if (fieldType.isPrimitive()) {
+        JVar var = block.decl(fieldType.boxify(), "parsed", parsed);
+        block._if(var.ne(JExpr._null()))._then().assign(ref, var);
+      } else {
+        block.assign(ref, parsed);
+      }
+    }
+
+    private void generateWriter(CClassInfo ci) {
+      JMethod method = writers.get(ci);
+      JVar writer = method.params().get(0);
+      JVar name = method.params().get(1);
+      JVar value = method.params().get(2);
+      JBlock body = method.body();
+      // JAXB closes elements without content as <Name/>
+      JExpression hasContent = hasContent(ci, value);
+      JVar content = null;
+      if (hasContent == JExpr.TRUE) {
+        body.invoke(writer, "writeStartElement").arg(name);
+      } else if (hasContent == JExpr.FALSE) {
+        body.invoke(writer, "writeEmptyElement").arg(name);
+      } else {
+        content = body.decl(model.BOOLEAN, "content", hasContent);
+        JConditional start = body._if(content);
+        start._then().invoke(writer, "writeStartElement").arg(name);
+        start._else().invoke(writer, "writeEmptyElement").arg(name);
+      }
+      // attributes must be written before any content
+      List<CPropertyInfo> properties = new ArrayList<>();
+      for (CPropertyInfo prop : properties(ci)) {
+        if (prop instanceof CAttributePropertyInfo) {
+          properties.add(0, prop);
+        } else {
+          properties.add(prop);
+        }
+      }
+      for (CPropertyInfo prop : properties) {
+        JFieldVar field = field(ci, prop);
+        JFieldRef ref = value.ref(field);
+        if (prop instanceof CAttributePropertyInfo) {
+          CAttributePropertyInfo attr = (CAttributePropertyInfo) prop;
+          JBlock block = field.type().isPrimitive() ? body : body._if(ref.ne(JExpr._null()))._then();
+          block.invoke(writer, "writeAttribute").arg(attr.getXmlName().getLocalPart())
+              .arg(print(attr.getTarget(), attr.getAdapter(), field.type(), ref));
+        } else if (prop instanceof CValuePropertyInfo) {
+          CValuePropertyInfo valueProp = (CValuePropertyInfo) prop;
+          JBlock block = field.type().isPrimitive() ? body : body._if(ref.ne(JExpr._null()))._then();
+          block.invoke(writer, "writeCharacters").arg(print(valueProp.getTarget(), valueProp.getAdapter(), field.type(), ref));
+        } else {
+          writeElement(body, writer, ref, field.type(), (CElementPropertyInfo) prop);
+        }
+      }
+      if (hasContent == JExpr.TRUE) {
+        body.invoke(writer, "writeEndElement");
+      } else if (content != null) {
+        body._if(content)._then().invoke(writer, "writeEndElement");
+      }
+    }
+
+    /**
+     * Returns an expression that is true when the value would write any text or child elements,
+     * or the JExpr.TRUE and JExpr.FALSE constants when that is known up front.
+     */
+    private JExpression hasContent(CClassInfo ci, JVar value) {
+      JExpression hasContent = null;
+      for (CPropertyInfo prop : properties(ci)) {
+        if (prop instanceof CAttributePropertyInfo) {
+          continue;
+        }
+        JFieldVar field = field(ci, prop);
+        if (field.type().isPrimitive()) {
+          return JExpr.TRUE;
+        }
+        JFieldRef ref = value.ref(field);
+        JExpression written;
+        if (prop instanceof CElementPropertyInfo && ((CElementPropertyInfo) prop).isCollection()) {
+          written = ref.ne(JExpr._null()).cand(ref.invoke("isEmpty").not());
+        } else if (prop instanceof CElementPropertyInfo && ((CElementPropertyInfo) prop).getTypes().get(0).isNillable()) {
+          return JExpr.TRUE;
+        } else {
+          written = ref.ne(JExpr._null());
+        }
+        hasContent = hasContent == null ? written : hasContent.cor(written);
+      }
+      return hasContent == null ? JExpr.FALSE : hasContent;
+    }
+
+    private void writeElement(JBlock body, JVar writer, JFieldRef ref, JType fieldType, CElementPropertyInfo element) {
+      CTypeRef type = element.getTypes().get(0);
+      String tag = type.getTagName().getLocalPart();
+      if (element.isCollection()) {
+        JClass itemType = ((JClass) fieldType).getTypeParameters().get(0);
+        JForEach forEach = body._if(ref.ne(JExpr._null()))._then().forEach(itemType, "item", ref);
+        JConditional notNull = forEach.body()._if(forEach.var().ne(JExpr._null()));
+        writeValue(notNull._then(), writer, tag, itemType, element, type, forEach.var());
+        if (type.isNillable()) {
+          notNull._else().invoke(writeNil()).arg(writer).arg(tag);
+        }
+      } else if (fieldType.isPrimitive()) {
+        writeValue(body, writer, tag, fieldType, element, type, ref);
+      } else {
+        JConditional notNull = body._if(ref.ne(JExpr._null()));
+        writeValue(notNull._then(), writer, tag, fieldType, element, type, ref);
+        if (type.isNillable()) {
+          notNull._else().invoke(writeNil()).arg(writer).arg(tag);
+        }
+      }
+    }
+
+    private void writeValue(JBlock block, JVar writer, String tag, JType type, CElementPropertyInfo element,
+        CTypeRef typeRef, JExpression value) {
+      if (typeRef.getTarget() instanceof CClassInfo) {
+        block.invoke(writers.get(typeRef.getTarget())).arg(writer).arg(tag).arg(value);
+      } else {
+        block.invoke(writeText()).arg(writer).arg(tag).arg(print(typeRef.getTarget(), element.getAdapter(), type, value));
+      }
+    }
+
+    /**
+     * Converts the text to the given type. Text that can't be converted yields null, as it does
+     * with JAXB's default event handler.
+     */
+    private JExpression parse(CNonElement target, CAdapter adapter, JType type, JExpression text) {
+      if (adapter != null) {
+        return JExpr.invoke(adapterUnmarshal(adapter, type)).arg(text);
+      }
+      if (target == CBuiltinLeafInfo.STRING) {
+        return text;
+      }
+      if (target instanceof CEnumLeafInfo) {
+        return JExpr.invoke(enumParse((CEnumLeafInfo) target)).arg(text);
+      }
+      return JExpr.invoke(builtinParse((CBuiltinLeafInfo) target, type)).arg(text);
+    }
+
+    private JExpression print(CNonElement target, CAdapter adapter, JType type, JExpression value) {
+      if (adapter != null) {
+        return JExpr.invoke(adapterMarshal(adapter, type)).arg(value);
+      }
+      if (target == CBuiltinLeafInfo.STRING) {
+        return value;
+      }
+      if (target instanceof CEnumLeafInfo) {
+        return value.invoke("value");
+      }
+      return model.ref(DatatypeConverter.class).staticInvoke(BUILTINS.get(target)[1]).arg(value);
+    }
+
+    private JMethod builtinParse(CBuiltinLeafInfo target, JType type) {
+      String suffix = BUILTINS.get(target)[0];
+      JMethod method = helpers.get("parse" + suffix);
+      if (method == null) {
+        method = helper(type.boxify(), "parse" + suffix);
+        JVar text = method.param(String.class, "text");
+        if (target == CBuiltinLeafInfo.BOOLEAN) {
+          // DatatypeConverter.parseBoolean fails with a NullPointerException on invalid input
+          JVar trimmed = method.body().decl(model.ref(String.class), "trimmed", text.invoke("trim"));
+          method.body()._if(JExpr.lit("true").invoke("equals").arg(trimmed).cor(JExpr.lit("1").invoke("equals").arg(trimmed)))
+              ._then()._return(model.ref(Boolean.class).staticRef("TRUE"));
+          method.body()._if(JExpr.lit("false").invoke("equals").arg(trimmed).cor(JExpr.lit("0").invoke("equals").arg(trimmed)))
+              ._then()._return(model.ref(Boolean.class).staticRef("FALSE"));
+          method.body()._return(JExpr._null());
+        } else {
+          returnOrNull(method, model.ref(DatatypeConverter.class).staticInvoke("parse" + suffix).arg(text),
+              IllegalArgumentException.class);
+        }
+      }
+      return method;
+    }
+
+    private JMethod enumParse(CEnumLeafInfo target) {
+      JClass enumClass = outline.getEnum(target).clazz;
+      String name = "parse" + enumClass.name();
+      JMethod method = helpers.get(name);
+      if (method == null) {
+        method = helper(enumClass, name);
+        JVar text = method.param(String.class, "text");
+        returnOrNull(method, enumClass.staticInvoke("fromValue").arg(text), IllegalArgumentException.class);
+      }
+      return method;
+    }
+
+    private JMethod adapterUnmarshal(CAdapter adapter, JType type) {
+      JClass adapterClass = adapter.getAdapterClass(outline);
+      String name = "unmarshal" + adapterClass.name();
+      JMethod method = helpers.get(name);
+      if (method == null) {
+        method = helper(type.boxify(), name);
+        JVar text = method.param(String.class, "text");
+        returnOrNull(method, adapterInstance(adapterClass).invoke("unmarshal").arg(text), Exception.class);
+      }
+      return method;
+    }
+
+    private JMethod adapterMarshal(CAdapter adapter, JType type) {
+      JClass adapterClass = adapter.getAdapterClass(outline);
+      String name = "marshal" + adapterClass.name();
+      JMethod method = helpers.get(name);
+      if (method == null) {
+        method = helper(model.ref(String.class), name);
+        JVar value = method.param(type.boxify(), "value");
+        method._throws(XMLStreamException.class);
+        JTryBlock tryBlock = method.body()._try();
+        tryBlock.body()._return(adapterInstance(adapterClass).invoke("marshal").arg(value));
+        JCatchBlock catchBlock = tryBlock._catch(model.ref(Exception.class));
+        catchBlock.body()._throw(JExpr._new(model.ref(XMLStreamException.class)).arg(catchBlock.param("e")));
+      }
+      return method;
+    }
+
+    private JFieldVar adapterInstance(JClass adapterClass) {
+      String name = adapterClass.name().toUpperCase();
+      JFieldVar field = codec.fields().get(name);
+      if (field == null) {
+        field = codec.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, adapterClass, name, JExpr._new(adapterClass));
+      }
+      return field;
+    }
+
+    private void returnOrNull(JMethod method, JExpression expression, Class<? extends Exception> exception) {
+      JTryBlock tryBlock = method.body()._try();
+      tryBlock.body()._return(expression);
+      tryBlock._catch(model.ref(exception)).body()._return(JExpr._null());
+    }
+
+    private JMethod helper(JType type, String name) {
+      JMethod method = codec.method(JMod.PRIVATE | JMod.STATIC, type, name);
+      helpers.put(name, method);
+      return method;
+    }
+
+    /** Advances to the next start or end tag, skipping text, comments and processing instructions. */
+    private JMethod nextElement() {
+      JMethod method = helpers.get("nextElement");
+      if (method == null) {
+        method = helper(model.INT, "nextElement");
+        JVar reader = method.param(XMLStreamReader.class, "reader");
+        method._throws(XMLStreamException.class);
+        JClass constants = model.ref(XMLStreamConstants.class);
+        JVar event = method.body().decl(model.INT, "event", reader.invoke("next"));
+        JWhileLoop loop = method.body()._while(event.ne(constants.staticRef("START_ELEMENT"))
+            .cand(event.ne(constants.staticRef("END_ELEMENT"))));
+        loop.body()._if(event.eq(constants.staticRef("END_DOCUMENT")))._then()
+            ._throw(JExpr._new(model.ref(XMLStreamException.class)).arg("Unexpected end of document"));
+        loop.body().assign(event, reader.invoke("next"));
+        method.body()._return(event);
+      }
+      return method;
+    }
+
+    /** Moves from a start tag to its end tag. */
+    private JMethod skip() {
+      JMethod method = helpers.get("skip");
+      if (method == null) {
+        method = helper(model.VOID, "skip");
+        JVar reader = method.param(XMLStreamReader.class, "reader");
+        method._throws(XMLStreamException.class);
+        JClass constants = model.ref(XMLStreamConstants.class);
+        JVar depth = method.body().decl(model.INT, "depth", JExpr.lit(1));
+        JWhileLoop loop = method.body()._while(depth.gt(JExpr.lit(0)));
+        JVar event = loop.body().decl(model.INT, "event", reader.invoke("next"));
+        JConditional start = loop.body()._if(event.eq(constants.staticRef("START_ELEMENT")));
+        start._then().assign(depth, depth.plus(JExpr.lit(1)));
+        start._elseif(event.eq(constants.staticRef("END_ELEMENT")))._then().assign(depth, depth.minus(JExpr.lit(1)));
+      }
+      return method;
+    }
+
+    /** The local name of an unqualified element, or an empty string so that it's skipped. */
+    private JMethod localName() {
+      JMethod method = helpers.get("localName");
+      if (method == null) {
+        method = helper(model.ref(String.class), "localName");
+        JVar reader = method.param(XMLStreamReader.class, "reader");
+        JVar namespace = method.body().decl(model.ref(String.class), "namespace", reader.invoke("getNamespaceURI"));
+        method.body()._return(JOp.cond(namespace.eq(JExpr._null()).cor(namespace.invoke("isEmpty")),
+            reader.invoke("getLocalName"), JExpr.lit("")));
+      }
+      return method;
+    }
+
+    /** Whether the element has xsi:nil set, in which case it is skipped. */
+    private JMethod nil() {
+      JMethod method = helpers.get("nil");
+      if (method == null) {
+        method = helper(model.BOOLEAN, "nil");
+        JVar reader = method.param(XMLStreamReader.class, "reader");
+        method._throws(XMLStreamException.class);
+        JVar nil = method.body().decl(model.ref(String.class), "nil", reader.invoke("getAttributeValue")
+            .arg(model.ref(XMLConstants.class).staticRef("W3C_XML_SCHEMA_INSTANCE_NS_URI")).arg("nil"));
+        JBlock then = method.body()._if(nil.ne(JExpr._null()).cand(
+            JExpr.lit("true").invoke("equals").arg(nil.invoke("trim"))
+            .cor(JExpr.lit("1").invoke("equals").arg(nil.invoke("trim")))))._then();
+        then.invoke(skip()).arg(reader);
+        then._return(JExpr.TRUE);
+        method.body()._return(JExpr.FALSE);
+      }
+      return method;
+    }
+
+    private JMethod writeText() {
+      JMethod method = helpers.get("writeText");
+      if (method == null) {
+        method = helper(model.VOID, "writeText");
+        JVar writer = method.param(XMLStreamWriter.class, "writer");
+        JVar name = method.param(String.class, "name");
+        JVar text = method.param(String.class, "text");
+        method._throws(XMLStreamException.class);
+        method.body().invoke(writer, "writeStartElement").arg(name);
+        method.body().invoke(writer, "writeCharacters").arg(text);
+        method.body().invoke(writer, "writeEndElement");
+      }
+      return method;
+    }
+
+    private JMethod writeNil() {
+      JMethod method = helpers.get("writeNil");
+      if (method == null) {
+        method = helper(model.VOID, "writeNil");
+        JVar writer = method.param(XMLStreamWriter.class, "writer");
+        JVar name = method.param(String.class, "name");
+        method._throws(XMLStreamException.class);
+        JExpression xsi = model.ref(XMLConstants.class).staticRef("W3C_XML_SCHEMA_INSTANCE_NS_URI");
+        method.body().invoke(writer, "writeEmptyElement").arg(name);
+        method.body().invoke(writer, "writeAttribute").arg("xsi").arg(xsi).arg("nil").arg("true");
+        method.body().invoke(writer, "writeNamespace").arg("xsi").arg(xsi);
+      }
+      return method;
+    }
+
+  }
+
+}
@@ -10,8 +10,10 @@ import java.util.List;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 
+import com.sun.codemodel.JBlock;
 import com.sun.codemodel.JClass;
 import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JConditional;
 import com.sun.codemodel.JDefinedClass;
 import com.sun.codemodel.JExpr;
 import com.sun.codemodel.JFieldVar;
@@ -19,6 +21,7 @@ import com.sun.codemodel.JFormatter;
 import com.sun.codemodel.JMethod;
 import com.sun.codemodel.JOp;
 import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
 import com.sun.tools.xjc.Options;
 import com.sun.tools.xjc.Plugin;
 import com.sun.tools.xjc.outline.ClassOutline;
@@ -43,6 +46,7 @@ public class PluginImpl extends Plugin {
       updateArrayOfGetters(co, model);
       updateArrayOfSetters(co, model);
     }
+    new CodecGenerator(outline).generate();
 
     return true;
   }
@@ -50,6 +54,9 @@ public class PluginImpl extends Plugin {
   /**
    * Update getters to use Java List. For example:
    * ArrayOfInvoices getInvoices() -> List<Invoice> getInvoices()
+   *
+   * The returned list is the live backing list. If the field was never set a shared, immutable
+   * empty list is returned so that reads don't allocate or add an empty element to the request.
    */
   private void updateArrayOfGetters(ClassOutline co, JCodeModel model) {
     JDefinedClass implClass = co.implClass;
@@ -80,7 +87,7 @@ public class PluginImpl extends Plugin {
 
       newMethod.body()._return(
           JOp.cond(field.eq(JExpr._null()),
-              JExpr._new(model.ref("java.util.ArrayList").narrow(typeParameter)),
+              JExpr.direct("java.util.Collections.<" + typeParameter.fullName() + ">emptyList()"),
               field.invoke("get" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1))));
     }    
   }
@@ -88,6 +95,9 @@ public class PluginImpl extends Plugin {
   /**
    * Update setters to use Java List. For example:
    * setLineItems(ArrayOfLineItem value) -> setLineItems(List<LineItem> value)
+   *
+   * The given list is adopted rather than copied, so later changes to it are reflected in the
+   * object. Passing null clears the field.
    */
   private void updateArrayOfSetters(ClassOutline co, JCodeModel model) {
     JDefinedClass implClass = co.implClass;
@@ -116,10 +126,14 @@ public class PluginImpl extends Plugin {
       String fieldName = model._getClass(field.type().fullName()).fields().keySet().iterator().next();
 
       JMethod newMethod = implClass.method(removed.mods().getValue(), Void.TYPE, removed.name());
-      newMethod.param(model.ref("java.util.List").narrow(model.ref(type)), "value");
-      newMethod.body().decl(arrType, "arr", JExpr._new(arrType));
-      newMethod.body().directStatement("arr.get" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1) + "().addAll(value);");
-      newMethod.body().directStatement("this." + varName + " = arr;");
+      JVar value = newMethod.param(model.ref("java.util.List").narrow(model.ref(type)), "value");
+      JConditional isNull = newMethod.body()._if(value.eq(JExpr._null()));
+      isNull._then().assign(JExpr._this().ref(field), JExpr._null());
+      JBlock notNull = isNull._else();
+      JVar arr = notNull.decl(arrType, "arr", JExpr._new(arrType));
+      // the ArrayOf classes are generated into the same package, so their field is accessible
+      notNull.assign(arr.ref(fieldName), value);
+      notNull.assign(JExpr._this().ref(field), arr);
     }
   }
 
@@ -0,0 +1,165 @@
+// Copyright 2015 Connectifier, Inc. All Rights Reserved.
+
+package com.connectifier.xeroclient.jaxb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.tools.xjc.Driver;
+
+/**
+ * Runs XJC with the plugin on a small schema, compiles the result and exercises the
+ * generated accessors.
+ */
+public class PluginImplTest {
+
+  private static final String PACKAGE = "com.connectifier.xeroclient.jaxb.test";
+
+  private static Path dir;
+  private static URLClassLoader loader;
+  private static Class<?> orderClass;
+  private static Class<?> lineItemClass;
+
+  @BeforeClass
+  public static void generate() throws Exception {
+    dir = Files.createTempDirectory("xjc-plugin-test");
+    File schema = new File(PluginImplTest.class.getResource("/schema/Order.xsd").toURI());
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(log, true, "UTF-8");
+    int status = Driver.run(new String[] {
+        "-quiet", "-extension", "-Xcustom", "-d", dir.toString(), "-p", PACKAGE, schema.getPath() }, out, out);
+    assertEquals(log.toString("UTF-8"), 0, status);
+
+    List<String> sources = new ArrayList<>();
+    for (File file : dir.resolve(PACKAGE.replace('.', File.separatorChar)).toFile().listFiles()) {
+      sources.add(file.getPath());
+    }
+    sources.add(0, "-nowarn");
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertEquals(0, compiler.run(null, log, log, sources.toArray(new String[sources.size()])));
+
+    loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, PluginImplTest.class.getClassLoader());
+    orderClass = loader.loadClass(PACKAGE + ".Order");
+    lineItemClass = loader.loadClass(PACKAGE + ".LineItem");
+  }
+
+  @AfterClass
+  public static void cleanUp() throws IOException {
+    loader.close();
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+        Files.delete(directory);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  @Test
+  public void getterReturnsSharedEmptyListWhenUnset() throws Exception {
+    Object order = orderClass.newInstance();
+    List<?> lineItems = getLineItems(order);
+    assertTrue(lineItems.isEmpty());
+    assertSame(lineItems, getLineItems(orderClass.newInstance()));
+    try {
+      getLineItems(order).add(null);
+      fail("Expected the empty list to be immutable");
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test
+  public void setterAdoptsList() throws Exception {
+    Object order = orderClass.newInstance();
+    List<Object> lineItems = new ArrayList<>();
+    setLineItems(order, lineItems);
+    assertSame(lineItems, getLineItems(order));
+
+    lineItems.add(lineItemClass.newInstance());
+    assertEquals(1, getLineItems(order).size());
+  }
+
+  @Test
+  public void setterWithNullClears() throws Exception {
+    Object order = orderClass.newInstance();
+    setLineItems(order, new ArrayList<>());
+    setLineItems(order, null);
+    assertTrue(getLineItems(order).isEmpty());
+    assertFalse(marshal(order).contains("LineItems"));
+  }
+
+  @Test
+  public void getterIsLiveAfterUnmarshalling() throws Exception {
+    JAXBContext context = JAXBContext.newInstance(orderClass);
+    Object order = context.createUnmarshaller().unmarshal(new StreamSource(new StringReader(
+        "<Order><LineItems><LineItem><Description>Widget</Description></LineItem></LineItems></Order>")),
+        orderClass).getValue();
+    List<Object> lineItems = getLineItems(order);
+    assertEquals(1, lineItems.size());
+    assertSame(lineItems, getLineItems(order));
+
+    lineItems.add(lineItemClass.newInstance());
+    assertEquals(2, marshal(order).split("<LineItem[/>]", -1).length - 1);
+  }
+
+  @Test
+  public void readingUnsetGetterDoesNotMarshalEmptyElement() throws Exception {
+    Object order = orderClass.newInstance();
+    getLineItems(order);
+    assertFalse(marshal(order).contains("LineItems"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> getLineItems(Object order) throws Exception {
+    return (List<Object>) orderClass.getMethod("getLineItems").invoke(order);
+  }
+
+  private static void setLineItems(Object order, List<?> lineItems) throws Exception {
+    orderClass.getMethod("setLineItems", List.class).invoke(order, lineItems);
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static String marshal(Object order) throws Exception {
+    StringWriter writer = new StringWriter();
+    JAXBContext.newInstance(orderClass).createMarshaller().marshal(
+        new JAXBElement(new QName("Order"), orderClass, order), writer);
+    return writer.toString();
+  }
+
+}